@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.widget.LinearLayout;
+
+/**
+ * The compatibility action bar. When instrumented, see
+ * {@link #setInstrumentedByDefault(boolean)} and {@link #setInstrumented(boolean)},
+ * it counts its layout requests and the measure, layout and draw passes that
+ * follow them in {@link LayoutStats}, attributed to the action bar call that
+ * caused them. Not instrumented, it behaves as a plain {@link LinearLayout}.
+ * <p>
+ * It can also show a debug overlay with live layout statistics, see
+ * {@link #setDebugOverlayEnabled(boolean)}.
+ */
+public class ActionBarContainer extends LinearLayout {
+
+	private static boolean sInstrumentedByDefault = false;
+	private static boolean sDebugOverlayByDefault = false;
+
+	private LayoutStats mLayoutStats;
+	/** The action bar call in progress, a LayoutStats.CAUSE_* constant. */
+	private int mCause = LayoutStats.CAUSE_OTHER;
+	/** Causes of the layout requests since the last draw, 1 << LayoutStats.CAUSE_*. */
+	private int mPendingCauses;
+	/*
+	 * Per action bar call in progress, innermost last: the number of children
+	 * that had requested a layout when it started, or -1 if not instrumented,
+	 * and whether the enclosing call had recorded its cause by then.
+	 */
+	private int[] mCallRequestedChildren = new int[4];
+	private boolean[] mCallOuterRecorded = new boolean[4];
+	private int mCallDepth;
+	/** Whether requestLayout() recorded the cause of the innermost call. */
+	private boolean mCallRecorded;
+	private ActionBarDebugOverlay mDebugOverlay;
+	private boolean mAttached;
+
+	public ActionBarContainer(Context context) {
+		super(context);
+		init();
+	}
+
+	public ActionBarContainer(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		init();
+	}
+
+	private void init() {
+		if (sInstrumentedByDefault) {
+			mLayoutStats = new LayoutStats();
+		}
+		if (sDebugOverlayByDefault) {
+			setDebugOverlayEnabled(true);
+		}
+	}
+
+	/**
+	 * Shows the debug overlay on action bars created from now on.
+	 */
+	public static void setDebugOverlayByDefault(boolean enabled) {
+		sDebugOverlayByDefault = enabled;
+	}
+
+	/**
+	 * Shows or hides a debug overlay over this action bar with its layout
+	 * requests, the duration of its latest measure and layout, its number of
+	 * child views and the presenter dispatches per second. Showing it also
+	 * instruments the action bar, see {@link #setInstrumented(boolean)}; its
+	 * redraw once a second counts as a draw pass of {@link LayoutStats#CAUSE_OTHER}.
+	 */
+	public void setDebugOverlayEnabled(boolean enabled) {
+		if (enabled == (mDebugOverlay != null)) {
+			return;
+		}
+		if (enabled) {
+			setInstrumented(true);
+			mDebugOverlay = new ActionBarDebugOverlay(this);
+			if (mAttached) {
+				mDebugOverlay.start();
+			}
+		} else {
+			mDebugOverlay.stop();
+			mDebugOverlay = null;
+		}
+		invalidate();
+	}
+
+	/**
+	 * Instruments action bars created from now on, e.g. in debug builds or tests.
+	 */
+	public static void setInstrumentedByDefault(boolean instrumented) {
+		sInstrumentedByDefault = instrumented;
+	}
+
+	public void setInstrumented(boolean instrumented) {
+		if (!instrumented) {
+			mLayoutStats = null;
+		} else if (mLayoutStats == null) {
+			mLayoutStats = new LayoutStats();
+		}
+	}
+
+	/**
+	 * @return The statistics, or null if this action bar is not instrumented.
+	 */
+	public LayoutStats getLayoutStats() {
+		return mLayoutStats;
+	}
+
+	/**
+	 * Attributes the layout requests until {@link #exitCause(int)} to an action bar call.
+	 * @param cause A LayoutStats.CAUSE_* constant
+	 * @return The cause to restore when the call is done
+	 */
+	int enterCause(int cause) {
+		if (mCallDepth == mCallRequestedChildren.length) {
+			final int[] grown = new int[mCallDepth * 2];
+			System.arraycopy(mCallRequestedChildren, 0, grown, 0, mCallDepth);
+			mCallRequestedChildren = grown;
+			final boolean[] grownRecorded = new boolean[mCallDepth * 2];
+			System.arraycopy(mCallOuterRecorded, 0, grownRecorded, 0, mCallDepth);
+			mCallOuterRecorded = grownRecorded;
+		}
+		mCallRequestedChildren[mCallDepth] = mLayoutStats != null
+				? countLayoutRequestedChildren() : -1;
+		mCallOuterRecorded[mCallDepth] = mCallRecorded;
+		mCallDepth++;
+		mCallRecorded = false;
+		final int previous = mCause;
+		mCause = cause;
+		return previous;
+	}
+
+	void exitCause(int previous) {
+		boolean outerRecorded = false;
+		// The call may have started before this action bar was created.
+		if (mCallDepth > 0) {
+			mCallDepth--;
+			final int requestedChildren = mCallRequestedChildren[mCallDepth];
+			outerRecorded = mCallOuterRecorded[mCallDepth];
+			// Once a layout is requested, a child's request no longer reaches
+			// requestLayout(). The child still keeps its own request.
+			if (!mCallRecorded && requestedChildren >= 0 && mLayoutStats != null
+					&& countLayoutRequestedChildren() > requestedChildren) {
+				recordLayoutRequest();
+			}
+		}
+		mCallRecorded = outerRecorded;
+		mCause = previous;
+	}
+
+	private int countLayoutRequestedChildren() {
+		int count = 0;
+		final int childCount = getChildCount();
+		for (int i = 0; i < childCount; i++) {
+			if (getChildAt(i).isLayoutRequested()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void recordLayoutRequest() {
+		mLayoutStats.onLayoutRequested(mCause);
+		mPendingCauses |= 1 << mCause;
+		mCallRecorded = true;
+	}
+
+	@Override
+	public void requestLayout() {
+		// Also called by the View constructor, while mLayoutStats is still null.
+		if (mLayoutStats != null) {
+			recordLayoutRequest();
+		}
+		super.requestLayout();
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		final LayoutStats stats = mLayoutStats;
+		if (stats == null) {
+			super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+			return;
+		}
+		final long start = System.nanoTime();
+		super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+		stats.onMeasured(mPendingCauses, System.nanoTime() - start);
+	}
+
+	@Override
+	protected void onLayout(boolean changed, int l, int t, int r, int b) {
+		final LayoutStats stats = mLayoutStats;
+		if (stats == null) {
+			super.onLayout(changed, l, t, r, b);
+			return;
+		}
+		final long start = System.nanoTime();
+		super.onLayout(changed, l, t, r, b);
+		stats.onLaidOut(mPendingCauses, System.nanoTime() - start);
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		mAttached = true;
+		if (mDebugOverlay != null) {
+			mDebugOverlay.start();
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		mAttached = false;
+		if (mDebugOverlay != null) {
+			mDebugOverlay.stop();
+		}
+	}
+
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		// Not draw(), which is skipped for a view group without a background.
+		final LayoutStats stats = mLayoutStats;
+		if (stats == null) {
+			super.dispatchDraw(canvas);
+		} else {
+			final long start = System.nanoTime();
+			super.dispatchDraw(canvas);
+			stats.onDrawn(mPendingCauses, System.nanoTime() - start);
+			mPendingCauses = 0;
+		}
+		// Drawn even if instrumentation was turned off after the overlay was shown.
+		if (mDebugOverlay != null) {
+			mDebugOverlay.draw(canvas);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Debug overlay drawn over an {@link ActionBarContainer}, showing its layout
+ * requests, the duration of its latest measure and layout passes, its number
+ * of child views and the presenter dispatches per second. The text is
+ * refreshed once a second while the action bar is attached.
+ * <p>
+ * Dispatches are counted by the metrics. Unless the application reports into
+ * its own, started overlays share counters they install, and the last one to
+ * stop uninstalls them again.
+ */
+final class ActionBarDebugOverlay {
+	private static final long REFRESH_INTERVAL_MS = 1000;
+
+	/** Counters installed by overlays, and the number of started overlays using them. */
+	private static ActionBarMetrics.Counters sInstalledCounters;
+	private static int sInstalledCountersUsers;
+
+	private final ActionBarContainer mContainer;
+	private final Paint mTextPaint;
+	private final Paint mBackgroundPaint;
+	private final String[] mLines = { "", "" };
+	private ActionBarMetrics.Counters mCounters;
+	private long mLastDispatches = -1;
+	private long mLastRefreshTime;
+	private boolean mRunning;
+
+	private final Runnable mRefreshRunnable = new Runnable() {
+		@Override
+		public void run() {
+			refresh();
+			mContainer.invalidate();
+			mContainer.postDelayed(this, REFRESH_INTERVAL_MS);
+		}
+	};
+
+	ActionBarDebugOverlay(ActionBarContainer container) {
+		mContainer = container;
+		mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mTextPaint.setColor(Color.WHITE);
+		mTextPaint.setTextSize(container.getResources().getDimension(
+				R.dimen.actionbar_compat_debug_text_size));
+		mBackgroundPaint = new Paint();
+		mBackgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+	}
+
+	void start() {
+		if (!mRunning) {
+			mRunning = true;
+			mCounters = acquireCounters();
+			mLastDispatches = -1;
+			mRefreshRunnable.run();
+		}
+	}
+
+	void stop() {
+		if (mRunning) {
+			mRunning = false;
+			mContainer.removeCallbacks(mRefreshRunnable);
+			releaseCounters(mCounters);
+			mCounters = null;
+		}
+	}
+
+	/**
+	 * @return The counters the metrics report into, installing them if the
+	 *         application has no metrics, or null if it has others.
+	 */
+	private static ActionBarMetrics.Counters acquireCounters() {
+		final Metrics metrics = ActionBarMetrics.get();
+		if (metrics == Metrics.NONE) {
+			sInstalledCounters = new ActionBarMetrics.Counters();
+			sInstalledCountersUsers = 0;
+			ActionBarMetrics.setMetrics(sInstalledCounters);
+		} else if (metrics != sInstalledCounters) {
+			return metrics instanceof ActionBarMetrics.Counters
+					? (ActionBarMetrics.Counters) metrics : null;
+		}
+		sInstalledCountersUsers++;
+		return sInstalledCounters;
+	}
+
+	private static void releaseCounters(ActionBarMetrics.Counters counters) {
+		if (counters == null || counters != sInstalledCounters
+				|| --sInstalledCountersUsers > 0) {
+			return;
+		}
+		// Unless the application has replaced them since.
+		if (ActionBarMetrics.get() == counters) {
+			ActionBarMetrics.setMetrics(null);
+		}
+		sInstalledCounters = null;
+	}
+
+	private void refresh() {
+		final LayoutStats stats = mContainer.getLayoutStats();
+		if (stats != null) {
+			mLines[0] = "relayouts " + stats.getTotalLayoutRequests()
+					+ "  measure " + formatMillis(stats.getLastMeasureNanos())
+					+ "  layout " + formatMillis(stats.getLastLayoutNanos());
+		} else {
+			mLines[0] = "not instrumented";
+		}
+
+		String dispatchRate = "n/a";
+		final long now = System.currentTimeMillis();
+		if (mCounters != null) {
+			final long dispatches = mCounters.snapshot().getTotalPresenterDispatches();
+			if (mLastDispatches >= 0 && now > mLastRefreshTime) {
+				dispatchRate = Long.toString(
+						(dispatches - mLastDispatches) * 1000 / (now - mLastRefreshTime));
+			}
+			mLastDispatches = dispatches;
+		}
+		mLastRefreshTime = now;
+		mLines[1] = "children " + mContainer.getChildCount() + "  dispatches/s " + dispatchRate;
+	}
+
+	private static String formatMillis(long nanos) {
+		final long micros = nanos / 1000;
+		final long hundredths = micros / 10 % 100;
+		return micros / 1000 + "." + (hundredths < 10 ? "0" : "") + hundredths + "ms";
+	}
+
+	void draw(Canvas canvas) {
+		final float lineHeight = mTextPaint.getTextSize() * 1.2f;
+		float width = 0;
+		for (int i = 0; i < mLines.length; i++) {
+			width = Math.max(width, mTextPaint.measureText(mLines[i]));
+		}
+		canvas.drawRect(0, 0, width + lineHeight, lineHeight * (mLines.length + 0.5f),
+				mBackgroundPaint);
+		for (int i = 0; i < mLines.length; i++) {
+			canvas.drawText(mLines[i], lineHeight / 2, lineHeight * (i + 1), mTextPaint);
+		}
+	}
+}
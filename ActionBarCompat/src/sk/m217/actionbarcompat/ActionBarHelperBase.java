@@ -20,28 +20,20 @@
 
 package sk.m217.actionbarcompat;
 
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-
 import android.app.Activity;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
-import android.content.res.XmlResourceParser;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.SparseArray;
-import android.view.InflateException;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -60,14 +52,7 @@ import android.widget.TextView;
  * A class that implements the action bar pattern for pre-Honeycomb devices.
  */
 public class ActionBarHelperBase extends ActionBarHelper {
-    private static final String MENU_RES_NAMESPACE = "http://schemas.android.com/apk/res/android";
-    private static final String MENU_ATTR_ID = "id";
-    private static final String MENU_ATTR_SHOW_AS_ACTION = "showAsAction";
-    private static final String MENU_ATTR_ACTION_LAYOUT = "actionLayout";
-
     protected Set<Integer> mActionItemIds = new HashSet<Integer>();
-    protected Map<Integer, Integer> mActionItemIdsToActionLayoutLookup = new HashMap<Integer, Integer>();
-    protected Map<Integer, Integer> mActionItemIdsToShowAsActionLookup = new HashMap<Integer, Integer>();
     private SimpleMenu mMenu;
 
     private HomeView mHomeLayout;
@@ -84,6 +69,9 @@ public class ActionBarHelperBase extends ActionBarHelper {
     private ExpandedActionViewMenuPresenter mExpandedMenuPresenter;
     private ActionMenuPresenter mActionMenuPresenter;
     private View mExpandedActionView;
+    private ActionBarContainer mContainer;
+    /** Views of the action items in the action bar, by item id. */
+    private final SparseArray<ActionItemView> mActionItemViews = new SparseArray<ActionItemView>();
 
     private static final int DISPLAY_DEFAULT = 0;
     private static final int DISPLAY_SHOW_HOME = 0x2;
@@ -115,9 +103,19 @@ public class ActionBarHelperBase extends ActionBarHelper {
     	if (mInitialized) {
     		return;
     	}
+    	final long initStart = ActionBarTracing.beginPhase();
+    	long start = ActionBarTracing.beginPhase();
         mActivity.getWindow().setFeatureInt(Window.FEATURE_CUSTOM_TITLE,
         		R.layout.actionbar_compat);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_CUSTOM_TITLE, start);
+
+        start = ActionBarTracing.beginPhase();
+        int cause = enterLayoutCause(LayoutStats.CAUSE_SETUP);
         setupActionBar();
+        exitLayoutCause(cause);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_SETUP_ACTION_BAR, start);
+
+        start = ActionBarTracing.beginPhase();
         mMenu = new SimpleMenu(mActivity);
         mMenu.setCallback(new SimpleMenu.Callback() {
 			@Override
@@ -125,21 +123,40 @@ public class ActionBarHelperBase extends ActionBarHelper {
 				return mActivity.onMenuItemSelected(Window.FEATURE_OPTIONS_PANEL, item);
 			}
 		});
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_CREATE_MENU, start);
+
+        start = ActionBarTracing.beginPhase();
         mActivity.onCreatePanelMenu(Window.FEATURE_OPTIONS_PANEL, mMenu);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_CREATE_PANEL_MENU, start);
+
+        start = ActionBarTracing.beginPhase();
         mActivity.onPrepareOptionsMenu(mMenu);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_PREPARE_OPTIONS_MENU, start);
+
+        start = ActionBarTracing.beginPhase();
+        cause = enterLayoutCause(LayoutStats.CAUSE_ADD_ACTION_ITEM);
         for (int i = 0; i < mMenu.size(); i++) {
             MenuItem item = mMenu.getItem(i);
             if (mActionItemIds.contains(item.getItemId())) {
                 addActionItemCompatFromMenuItem(item);
             }
         }
+        exitLayoutCause(cause);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_ADD_ACTION_ITEMS, start);
+
         // TODO mozno dat hned za mMenu = new SimpleMenu(mActivity);
         // ked sa implementuje setactionview, setshowasaction atd.
+        start = ActionBarTracing.beginPhase();
         mExpandedMenuPresenter = new ExpandedActionViewMenuPresenter();
         mActionMenuPresenter = new ActionMenuPresenter();
-        mMenu.addMenuPresenter(mExpandedMenuPresenter);
-        mMenu.addMenuPresenter(mActionMenuPresenter);
+        // The expanded action view presenter only expands and collapses items.
+        mMenu.addMenuPresenter(mExpandedMenuPresenter, 0);
+        mMenu.addMenuPresenter(mActionMenuPresenter, SimpleMenu.ITEM_CHANGED_NEW
+        		| SimpleMenu.ITEM_CHANGED_TITLE | SimpleMenu.ITEM_CHANGED_ICON
+        		| SimpleMenu.ITEM_CHANGED_VISIBILITY);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_REGISTER_PRESENTERS, start);
         mInitialized = true;
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_INIT_ACTION_BAR, initStart);
     }
 
     private final OnClickListener mExpandedActionViewUpListener = new OnClickListener() {
@@ -167,11 +184,15 @@ public class ActionBarHelperBase extends ActionBarHelper {
         if (actionBarCompat == null) {
             return;
         }
+        if (actionBarCompat instanceof ActionBarContainer) {
+        	mContainer = (ActionBarContainer) actionBarCompat;
+        }
 
         // Add home layout
         mHomeItem = new SimpleMenuItem(new SimpleMenu(mActivity),
         		android.R.id.home, 0, mActivity.getTitle());
 
+        long start = ActionBarTracing.beginPhase();
         final LayoutInflater inflater = LayoutInflater.from(mActivity);
 
         mHomeLayout = (HomeView) inflater.inflate(
@@ -187,7 +208,9 @@ public class ActionBarHelperBase extends ActionBarHelper {
         mExpandedHomeLayout.setContentDescription(mActivity.getResources().getText(
                 R.string.action_bar_up_description));
         mExpandedHomeLayout.setFocusable(true);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_INFLATE_HOME, start);
 
+        start = ActionBarTracing.beginPhase();
         ApplicationInfo appInfo = mActivity.getApplicationInfo();
         PackageManager pm = mActivity.getPackageManager();
         //TODO mLogo = a.getDrawable(R.styleable.ActionBar_logo);
@@ -200,12 +223,14 @@ public class ActionBarHelperBase extends ActionBarHelper {
         if (mIcon == null) {
         	mIcon = appInfo.loadIcon(pm);
         }
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_LOAD_ICON, start);
 
         mHomeLayout.setIcon(mIcon);
 
         actionBarCompat.addView(mHomeLayout);
 
         // Add title text
+        start = ActionBarTracing.beginPhase();
         LinearLayout.LayoutParams springLayoutParams = new LinearLayout.LayoutParams(
         		0, ViewGroup.LayoutParams.FILL_PARENT);
         springLayoutParams.weight = 1;
@@ -215,6 +240,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
         mTitleText.setLayoutParams(springLayoutParams);
         mTitleText.setText(mTitle);
         actionBarCompat.addView(mTitleText);
+        ActionBarTracing.endPhase(mActivity, ActionBarTracing.PHASE_CREATE_TITLE, start);
 
         //setDisplayOptions(DISPLAY_DEFAULT); // TODO styles.xml
         setDisplayOptions(DISPLAY_SHOW_HOME | DISPLAY_SHOW_TITLE);
@@ -227,12 +253,14 @@ public class ActionBarHelperBase extends ActionBarHelper {
         View refreshIndicator = mActivity.findViewById(
         		R.id.actionbar_compat_item_refresh_progress);
 
+        final int cause = enterLayoutCause(LayoutStats.CAUSE_REFRESH_STATE);
         if (refreshButton != null) {
             refreshButton.setVisibility(refreshing ? View.GONE : View.VISIBLE);
         }
         if (refreshIndicator != null) {
             refreshIndicator.setVisibility(refreshing ? View.VISIBLE : View.GONE);
         }
+        exitLayoutCause(cause);
     }
 
     /**
@@ -266,7 +294,9 @@ public class ActionBarHelperBase extends ActionBarHelper {
 
     /**
      * Returns a {@link android.view.MenuInflater} that can read action bar metadata on
-     * pre-Honeycomb devices.
+     * pre-Honeycomb devices. Menus registered with
+     * {@link SimpleMenuInflater#registerCompiledMenu(int, SimpleMenuInflater.CompiledMenu)}
+     * are built by their generated code instead of being read from XML.
      */
     public MenuInflater getMenuInflater(MenuInflater superMenuInflater) {
         return new WrappedMenuInflater(mActivity, superMenuInflater);
@@ -280,6 +310,21 @@ public class ActionBarHelperBase extends ActionBarHelper {
         return (ViewGroup) mActivity.findViewById(R.id.actionbar_compat);
     }
 
+    /**
+     * Attributes the layout passes requested until {@link #exitLayoutCause(int)}
+     * to an action bar call, if the action bar is instrumented, see {@link LayoutStats}.
+     * @return The cause to pass to {@link #exitLayoutCause(int)}
+     */
+    private int enterLayoutCause(int cause) {
+    	return mContainer != null ? mContainer.enterCause(cause) : LayoutStats.CAUSE_OTHER;
+    }
+
+    private void exitLayoutCause(int previous) {
+    	if (mContainer != null) {
+    		mContainer.exitCause(previous);
+    	}
+    }
+
     /**
      * Adds an action button to the compatibility action bar, using menu information from a {@link
      * android.view.MenuItem}. If the menu item ID is <code>menu_refresh</code>, the menu item's
@@ -287,44 +332,12 @@ public class ActionBarHelperBase extends ActionBarHelper {
      * {@link sk.m217.actionbarcompat.ActionBarHelperBase#setRefreshActionItemState(boolean)}.
      */
     private View addActionItemCompatFromMenuItem(final MenuItem item) {
-        final int itemId = item.getItemId();
-        final SimpleMenuItem simpleItem = (SimpleMenuItem) item;
-
         final ViewGroup actionBarCompat = getActionBarCompat();
         if (actionBarCompat == null) {
             return null;
         }
 
-        View view;
-        if (simpleItem.getActionView() != null && !simpleItem.hasCollapsibleActionView()) {
-        	view = simpleItem.getActionView();
-        } else {
-            // Create the button
-            ImageButton actionButton = new ImageButton(mActivity, null,
-            		R.attr.actionbarCompatItemStyle);
-            actionButton.setLayoutParams(new ViewGroup.LayoutParams(
-            		(int) mActivity.getResources().getDimension(
-            				R.dimen.actionbar_compat_button_width),
-                    ViewGroup.LayoutParams.FILL_PARENT));
-            if (itemId == R.id.menu_refresh) {
-                actionButton.setId(R.id.actionbar_compat_item_refresh);
-            }
-            actionButton.setImageDrawable(item.getIcon());
-            actionButton.setScaleType(ImageView.ScaleType.CENTER);
-            actionButton.setContentDescription(item.getTitle());
-            actionButton.setOnClickListener(new View.OnClickListener() {
-                public void onClick(View view) {
-                	if (simpleItem.isEnabled()) {
-                		if (simpleItem.hasCollapsibleActionView()) {
-                			simpleItem.expandActionView();
-                		}
-                		simpleItem.invoke();
-                	}
-                }
-            });
-            view = actionButton;
-        }
-        simpleItem.setView(view);
+        final View view = createActionItemView((SimpleMenuItem) item).mView;
         actionBarCompat.addView(view);
 
         if (item.getItemId() == R.id.menu_refresh) {
@@ -355,15 +368,161 @@ public class ActionBarHelperBase extends ActionBarHelper {
         return view;
     }
 
+    /**
+     * Creates the action bar view of an item, its action view or a button,
+     * and registers it in {@link #mActionItemViews}.
+     */
+    private ActionItemView createActionItemView(SimpleMenuItem item) {
+        final ActionItemView actionItemView;
+        if (item.getActionView() != null && !item.hasCollapsibleActionView()) {
+        	actionItemView = new ActionItemView(item.getActionView(), false);
+        } else {
+            // Create the button
+            ImageButton actionButton = new ImageButton(mActivity, null,
+            		R.attr.actionbarCompatItemStyle);
+            actionButton.setLayoutParams(new ViewGroup.LayoutParams(
+            		(int) mActivity.getResources().getDimension(
+            				R.dimen.actionbar_compat_button_width),
+                    ViewGroup.LayoutParams.FILL_PARENT));
+            if (item.getItemId() == R.id.menu_refresh) {
+                actionButton.setId(R.id.actionbar_compat_item_refresh);
+            }
+            actionButton.setScaleType(ImageView.ScaleType.CENTER);
+            actionItemView = new ActionItemView(actionButton, true);
+            actionButton.setOnClickListener(actionItemView);
+        }
+        actionItemView.bind(item);
+        mActionItemViews.put(item.getItemId(), actionItemView);
+        ActionBarMetrics.get().onActionButtonCreated();
+        return actionItemView;
+    }
+
+    /**
+     * Binds the action bar views to the items of the menu after all of them
+     * were replaced, see {@link SimpleMenu#publishModel(SimpleMenuModel)}. A
+     * view moves to the new item with its id. Views of items that are gone or
+     * no longer request an action button are removed, and items that newly
+     * request one get a view.
+     */
+    private void reconcileActionItems() {
+    	final ViewGroup actionBarCompat = getActionBarCompat();
+    	if (actionBarCompat == null) {
+    		return;
+    	}
+    	final int cause = enterLayoutCause(LayoutStats.CAUSE_UPDATE_ITEM);
+    	for (int i = mActionItemViews.size() - 1; i >= 0; i--) {
+    		final int itemId = mActionItemViews.keyAt(i);
+    		final ActionItemView actionItemView = mActionItemViews.valueAt(i);
+    		final int index = mMenu.findItemIndex(itemId);
+    		final SimpleMenuItem item = index >= 0 ? (SimpleMenuItem) mMenu.getItem(index) : null;
+    		if (item == null || !item.requestsActionButton()) {
+    			actionItemView.bind(null);
+    			actionBarCompat.removeView(actionItemView.mView);
+    			if (itemId == R.id.menu_refresh) {
+    				final View indicator = actionBarCompat.findViewById(
+    						R.id.actionbar_compat_item_refresh_progress);
+    				if (indicator != null) {
+    					actionBarCompat.removeView(indicator);
+    				}
+    			}
+    			mActionItemViews.removeAt(i);
+    			continue;
+    		}
+    		if (item == actionItemView.mItem) {
+    			continue;
+    		}
+    		View view = actionItemView.mView;
+    		if (actionItemView.canShow(item)) {
+    			actionItemView.bind(item);
+    		} else {
+    			// The new item has another action view, put it in place of the old view.
+    			actionItemView.bind(null);
+    			final int position = actionBarCompat.indexOfChild(view);
+    			actionBarCompat.removeViewAt(position);
+    			view = createActionItemView(item).mView;
+    			actionBarCompat.addView(view, position);
+    		}
+    		view.setVisibility(item.isVisible() ? View.VISIBLE : View.GONE);
+    	}
+
+    	final int size = mMenu.size();
+    	for (int i = 0; i < size; i++) {
+    		final SimpleMenuItem item = (SimpleMenuItem) mMenu.getItem(i);
+    		if (item.requestsActionButton() && mActionItemViews.get(item.getItemId()) == null) {
+    			addActionItemCompatFromMenuItem(item);
+    		}
+    	}
+    	exitLayoutCause(cause);
+    }
+
+    /**
+     * A view in the action bar and the item it shows. The view outlives the
+     * item when a published menu model replaces the items, and is then bound
+     * to the new item with the same id.
+     */
+    private static class ActionItemView implements View.OnClickListener {
+    	final View mView;
+    	final boolean mIsButton;
+    	SimpleMenuItem mItem;
+
+    	ActionItemView(View view, boolean isButton) {
+    		mView = view;
+    		mIsButton = isButton;
+    	}
+
+    	/**
+    	 * @return True if the view can show the item, a button for an item
+    	 *         without an action view of its own.
+    	 */
+    	boolean canShow(SimpleMenuItem item) {
+    		if (item.getActionView() != null && !item.hasCollapsibleActionView()) {
+    			return !mIsButton && mView == item.getActionView();
+    		}
+    		return mIsButton;
+    	}
+
+    	/**
+    	 * @param item The item to show, or null to unbind the view
+    	 */
+    	void bind(SimpleMenuItem item) {
+    		if (mItem != null && mItem != item && mItem.getView() == mView) {
+    			mItem.setView(null);
+    		}
+    		mItem = item;
+    		if (item == null) {
+    			return;
+    		}
+    		item.setView(mView);
+    		if (mIsButton) {
+    			final ImageButton actionButton = (ImageButton) mView;
+    			actionButton.setImageDrawable(item.getIcon());
+    			actionButton.setContentDescription(item.getTitle());
+    		}
+    	}
+
+    	@Override
+    	public void onClick(View view) {
+    		final SimpleMenuItem item = mItem;
+    		if (item != null && item.isEnabled()) {
+    			if (item.hasCollapsibleActionView()) {
+    				item.expandActionView();
+    			}
+    			item.invoke();
+    		}
+    	}
+    }
+
     /**
      * A {@link android.view.MenuInflater} that reads action bar metadata.
      */
     private class WrappedMenuInflater extends MenuInflater {
         MenuInflater mInflater;
+        SimpleMenuInflater mSimpleInflater;
 
         public WrappedMenuInflater(Context context, MenuInflater inflater) {
             super(context);
             mInflater = inflater;
+            mSimpleInflater = new SimpleMenuInflater(context);
         }
 
         @Override
@@ -372,80 +531,11 @@ public class ActionBarHelperBase extends ActionBarHelper {
         		mInflater.inflate(menuRes, menu);
         		return;
         	}
-            loadActionBarMetadata(menuRes);
-            mInflater.inflate(menuRes, menu);
-            for (int i = 0; i < menu.size(); i++) {
-            	SimpleMenuItem item = (SimpleMenuItem) menu.getItem(i);
-            	int itemId = item.getItemId();
-            	if (mActionItemIdsToShowAsActionLookup.containsKey(itemId)) {
-            		item.setShowAsAction(mActionItemIdsToShowAsActionLookup.get(itemId));
-            	}
-            	if (mActionItemIdsToActionLayoutLookup.containsKey(itemId)) {
-            		item.setActionView(mActionItemIdsToActionLayoutLookup.get(itemId));
-            	}
-            }
-        }
-
-        /**
-         * Loads action bar metadata from a menu resource, storing a list of menu item IDs that
-         * should be shown on-screen (i.e. those with showAsAction set to always or ifRoom). 
-         * @param menuResId
-         */
-        private void loadActionBarMetadata(int menuResId) {
-            XmlResourceParser parser = null;
-            try {
-                parser = mActivity.getResources().getXml(menuResId);
-
-                int eventType = parser.getEventType();
-                int itemId;
-                int showAsAction;
-
-                boolean eof = false;
-                while (!eof) {
-                    switch (eventType) {
-                    case XmlPullParser.START_TAG:
-                        if (!parser.getName().equals("item")) {
-                            break;
-                        }
-
-                        itemId = parser.getAttributeResourceValue(MENU_RES_NAMESPACE,
-                        		MENU_ATTR_ID, 0);
-                        if (itemId == 0) {
-                            break;
-                        }
-
-                        showAsAction = parser.getAttributeIntValue(MENU_RES_NAMESPACE,
-                        		MENU_ATTR_SHOW_AS_ACTION, -1);
-
-                        mActionItemIdsToShowAsActionLookup.put(itemId, showAsAction);
-                        if ((showAsAction & MenuItem.SHOW_AS_ACTION_ALWAYS) != 0 ||
-                        		(showAsAction & MenuItem.SHOW_AS_ACTION_IF_ROOM) != 0) {
-                        	int actionLayout = parser.getAttributeResourceValue(MENU_RES_NAMESPACE,
-                            		MENU_ATTR_ACTION_LAYOUT, 0);
-                            if (actionLayout != 0) {
-                                mActionItemIdsToActionLayoutLookup.put(itemId, actionLayout);
-                            }
-                            mActionItemIds.add(itemId);
-                        }
-
-                        break;
-
-                    case XmlPullParser.END_DOCUMENT:
-                        eof = true;
-                        break;
-                    }
-
-                    eventType = parser.next();
-                }
-            } catch (XmlPullParserException e) {
-                throw new InflateException("Error inflating menu XML", e);
-            } catch (IOException e) {
-                throw new InflateException("Error inflating menu XML", e);
-            } finally {
-                if (parser != null) {
-                    parser.close();
-                }
-            }
+        	// Reads the XML once, action bar attributes included, and builds
+        	// the items fully configured.
+        	final SimpleMenuModel model = mSimpleInflater.getModel(menuRes);
+        	model.collectActionItemIds(mActionItemIds);
+        	((SimpleMenu) menu).addModelItems(model);
         }
     }
 
@@ -487,35 +577,31 @@ public class ActionBarHelperBase extends ActionBarHelper {
     	}
     	@Override
     	public void updateMenuView(SimpleMenu menu, SimpleMenuItem item, int change) {
-    		switch (change) {
-				case SimpleMenu.ITEM_CHANGED_NEW:
-					// TODO
-					break;
-				case SimpleMenu.ITEM_CHANGED_TITLE:
-					if (item != null && item.getView() instanceof ImageButton) {
-						ImageButton actionButton = (ImageButton) item.getView();
-						actionButton.setContentDescription(item.getTitle());
-					}
-					break;
-				case SimpleMenu.ITEM_CHANGED_ICON:
-					if (item != null && item.getView() instanceof ImageButton) {
-						ImageButton actionButton = (ImageButton) item.getView();
-						actionButton.setImageDrawable(item.getIcon());
-					}
-					break;
-				case SimpleMenu.ITEM_CHANGED_ACTION:
-					// TODO
-					break;
-				case SimpleMenu.ITEM_CHANGED_ACTION_VIEW:
-					// TODO
-					break;
-				case SimpleMenu.ITEM_CHANGED_VISIBILITY:
-					if (item != null && item.getView() != null) {
-						item.getView().setVisibility(
-								item.isVisible() ? View.VISIBLE : View.GONE);
-					}
-					break;
+    		if (item == null) {
+    			if ((change & SimpleMenu.ITEM_CHANGED_NEW) != 0) {
+    				// All items were replaced.
+    				reconcileActionItems();
+    			}
+    			return;
+    		}
+    		if (item.getView() == null) {
+    			return;
+    		}
+    		final int cause = enterLayoutCause(LayoutStats.CAUSE_UPDATE_ITEM);
+    		// TODO ITEM_CHANGED_ACTION, ITEM_CHANGED_ACTION_VIEW
+    		if (item.getView() instanceof ImageButton) {
+    			ImageButton actionButton = (ImageButton) item.getView();
+    			if ((change & SimpleMenu.ITEM_CHANGED_TITLE) != 0) {
+    				actionButton.setContentDescription(item.getTitle());
+    			}
+    			if ((change & SimpleMenu.ITEM_CHANGED_ICON) != 0) {
+    				actionButton.setImageDrawable(item.getIcon());
+    			}
+    		}
+    		if ((change & SimpleMenu.ITEM_CHANGED_VISIBILITY) != 0) {
+    			item.getView().setVisibility(item.isVisible() ? View.VISIBLE : View.GONE);
     		}
+    		exitLayoutCause(cause);
     	}
     	@Override
     	public boolean expandItemActionView(SimpleMenu menu, SimpleMenuItem item) {
@@ -550,6 +636,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
         			ViewGroup.LayoutParams.WRAP_CONTENT);
     		params.weight = 1;
 
+    		final int cause = enterLayoutCause(LayoutStats.CAUSE_EXPAND_ACTION_VIEW);
     		mExpandedActionView = item.getActionView();
     		mExpandedHomeLayout.setIcon(mIcon.getConstantState().newDrawable(
     				mActivity.getResources()));
@@ -572,6 +659,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
     		}
     		item.setActionViewExpanded(true);
     		actionBarCompat.requestLayout();
+    		exitLayoutCause(cause);
     		//if (mExpandedActionView instanceof CollapsibleActionView) {
     		//	((CollapsibleActionView) mExpandedActionView).onActionViewExpanded();
     		//}
@@ -587,6 +675,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
     		//if (mExpandedActionView instanceof CollapsibleActionView) {
     		//	((CollapsibleActionView) mExpandedActionView).onActionViewCollapsed();
     		//}
+            final int cause = enterLayoutCause(LayoutStats.CAUSE_COLLAPSE_ACTION_VIEW);
             actionBar.removeView(mExpandedActionView);
             actionBar.removeView(mExpandedHomeLayout);
             mExpandedActionView = null;
@@ -608,6 +697,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
             mExpandedHomeLayout.setIcon(null);
             mCurrentExpandedItem = null;
             actionBar.requestLayout();
+            exitLayoutCause(cause);
 
             return true;
     	}
@@ -616,6 +706,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
     private void setDisplayOptions(int options) {
     	final int flagsChanged = mDisplayOptions == -1 ? -1 : options ^ mDisplayOptions;
     	mDisplayOptions = options;
+    	final int cause = enterLayoutCause(LayoutStats.CAUSE_DISPLAY_OPTIONS);
 
     	final boolean showHome = (options & DISPLAY_SHOW_HOME) != 0;
     	final int vis = showHome && mExpandedActionView == null ? View.VISIBLE : View.GONE;
@@ -650,6 +741,7 @@ public class ActionBarHelperBase extends ActionBarHelper {
     		mHomeLayout.setContentDescription(mActivity.getResources().getText(
     				R.string.action_bar_home_description));
         }
+    	exitLayoutCause(cause);
     }
 
     private void setDisplayOptions(int options, int mask) {
@@ -676,7 +768,9 @@ public class ActionBarHelperBase extends ActionBarHelper {
     	}
     	mIcon = icon;
     	if (icon != null) {
+    		final int cause = enterLayoutCause(LayoutStats.CAUSE_SET_ICON);
     		mHomeLayout.setIcon(icon);
+    		exitLayoutCause(cause);
     	}
     }
 
@@ -691,7 +785,9 @@ public class ActionBarHelperBase extends ActionBarHelper {
     	mTitle = title;
     	mUserTitle = true;
     	if ((mDisplayOptions & DISPLAY_SHOW_TITLE) != 0) {
+    		final int cause = enterLayoutCause(LayoutStats.CAUSE_SET_TITLE);
     		mTitleText.setText(mTitle);
+    		exitLayoutCause(cause);
     	}
 	}
 
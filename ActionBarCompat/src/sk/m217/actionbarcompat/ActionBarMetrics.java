@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds the {@link Metrics} the library reports into, and provides
+ * {@link Counters}, an implementation cheap enough to leave on in release builds.
+ */
+public final class ActionBarMetrics {
+
+	private static volatile Metrics sMetrics = Metrics.NONE;
+
+	private ActionBarMetrics() {
+	}
+
+	/**
+	 * @param metrics Receives the counts, or null to stop reporting
+	 */
+	public static void setMetrics(Metrics metrics) {
+		sMetrics = metrics != null ? metrics : Metrics.NONE;
+	}
+
+	static Metrics get() {
+		return sMetrics;
+	}
+
+	/**
+	 * Lock-free counters of everything reported to {@link Metrics}.
+	 */
+	public static final class Counters implements Metrics {
+		private static final int CHANGE_KINDS = SimpleMenu.ITEM_CHANGE_KINDS;
+		private static final int ACTION_BUTTONS = CHANGE_KINDS;
+		private static final int MENU_PARSES = CHANGE_KINDS + 1;
+		private static final int EXPANDS = CHANGE_KINDS + 2;
+		private static final int COLLAPSES = CHANGE_KINDS + 3;
+		private static final int ICON_LOADS = CHANGE_KINDS + 4;
+		private static final int COUNTERS = CHANGE_KINDS + 5;
+
+		private final AtomicLongArray mCounts = new AtomicLongArray(COUNTERS);
+
+		public void onPresenterDispatch(int change) {
+			while (change != 0) {
+				final int kind = Integer.numberOfTrailingZeros(change);
+				if (kind < CHANGE_KINDS) {
+					mCounts.incrementAndGet(kind);
+				}
+				change &= change - 1;
+			}
+		}
+
+		public void onActionButtonCreated() {
+			mCounts.incrementAndGet(ACTION_BUTTONS);
+		}
+
+		public void onMenuParsed(int menuRes) {
+			mCounts.incrementAndGet(MENU_PARSES);
+		}
+
+		public void onExpandActionView() {
+			mCounts.incrementAndGet(EXPANDS);
+		}
+
+		public void onCollapseActionView() {
+			mCounts.incrementAndGet(COLLAPSES);
+		}
+
+		public void onIconLoaded() {
+			mCounts.incrementAndGet(ICON_LOADS);
+		}
+
+		/**
+		 * @return The current counts. Each count is read atomically, but
+		 *         counts updated meanwhile on other threads may be from
+		 *         slightly different moments.
+		 */
+		public Snapshot snapshot() {
+			final long[] counts = new long[COUNTERS];
+			for (int i = 0; i < COUNTERS; i++) {
+				counts[i] = mCounts.get(i);
+			}
+			return new Snapshot(counts);
+		}
+
+		/**
+		 * Sets all counts to zero.
+		 */
+		public void reset() {
+			for (int i = 0; i < COUNTERS; i++) {
+				mCounts.set(i, 0);
+			}
+		}
+
+		/**
+		 * @return The current counts, and sets them to zero.
+		 */
+		public Snapshot snapshotAndReset() {
+			final long[] counts = new long[COUNTERS];
+			for (int i = 0; i < COUNTERS; i++) {
+				counts[i] = mCounts.getAndSet(i, 0);
+			}
+			return new Snapshot(counts);
+		}
+	}
+
+	/**
+	 * Counts taken by {@link Counters#snapshot()}.
+	 */
+	public static final class Snapshot {
+		private final long[] mCounts;
+
+		Snapshot(long[] counts) {
+			mCounts = counts;
+		}
+
+		/**
+		 * @param change A single <code>SimpleMenu.ITEM_CHANGED_*</code> flag
+		 * @return How many times a presenter was notified of the change
+		 */
+		public long getPresenterDispatches(int change) {
+			if (Integer.bitCount(change) != 1 || change >= 1 << Counters.CHANGE_KINDS) {
+				throw new IllegalArgumentException("Not a single change kind: " + change);
+			}
+			return mCounts[Integer.numberOfTrailingZeros(change)];
+		}
+
+		/**
+		 * @return How many times a presenter was notified of any change; a
+		 *         notification of combined changes counts for each of them.
+		 */
+		public long getTotalPresenterDispatches() {
+			long total = 0;
+			for (int i = 0; i < Counters.CHANGE_KINDS; i++) {
+				total += mCounts[i];
+			}
+			return total;
+		}
+
+		public long getActionButtonsCreated() {
+			return mCounts[Counters.ACTION_BUTTONS];
+		}
+
+		public long getMenuParses() {
+			return mCounts[Counters.MENU_PARSES];
+		}
+
+		public long getExpands() {
+			return mCounts[Counters.EXPANDS];
+		}
+
+		public long getCollapses() {
+			return mCounts[Counters.COLLAPSES];
+		}
+
+		public long getIconLoads() {
+			return mCounts[Counters.ICON_LOADS];
+		}
+
+		@Override
+		public String toString() {
+			return "presenterDispatches=[new=" + mCounts[0] + ", title=" + mCounts[1]
+					+ ", icon=" + mCounts[2] + ", action=" + mCounts[3]
+					+ ", actionView=" + mCounts[4] + ", visibility=" + mCounts[5]
+					+ "], actionButtons=" + getActionButtonsCreated()
+					+ ", menuParses=" + getMenuParses()
+					+ ", expands=" + getExpands()
+					+ ", collapses=" + getCollapses()
+					+ ", iconLoads=" + getIconLoads();
+		}
+	}
+}
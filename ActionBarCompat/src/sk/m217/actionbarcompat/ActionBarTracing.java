@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.app.Activity;
+
+/**
+ * Timing of the phases of setting up the compatibility action bar, see
+ * {@link ActionBarHelperBase#initActionBar()}. Phases are only reported to a
+ * {@link Listener}: the compatibility action bar is only set up before API 11,
+ * and <code>android.os.Trace</code> sections need API 18. Tracing is off by
+ * default, and then a phase costs a field read. The listener should be set
+ * before the first activity starts, e.g. in <code>Application.onCreate()</code>.
+ */
+public final class ActionBarTracing {
+	public static final String PHASE_INIT_ACTION_BAR = "ActionBarCompat:initActionBar";
+	public static final String PHASE_CUSTOM_TITLE = "ActionBarCompat:customTitle";
+	public static final String PHASE_SETUP_ACTION_BAR = "ActionBarCompat:setupActionBar";
+	public static final String PHASE_INFLATE_HOME = "ActionBarCompat:inflateHome";
+	public static final String PHASE_LOAD_ICON = "ActionBarCompat:loadIcon";
+	public static final String PHASE_CREATE_TITLE = "ActionBarCompat:createTitle";
+	public static final String PHASE_CREATE_MENU = "ActionBarCompat:createMenu";
+	public static final String PHASE_CREATE_PANEL_MENU = "ActionBarCompat:onCreatePanelMenu";
+	public static final String PHASE_PREPARE_OPTIONS_MENU = "ActionBarCompat:onPrepareOptionsMenu";
+	public static final String PHASE_ADD_ACTION_ITEMS = "ActionBarCompat:addActionItems";
+	public static final String PHASE_REGISTER_PRESENTERS = "ActionBarCompat:registerPresenters";
+
+	/**
+	 * Receives the duration of each phase, on the UI thread.
+	 */
+	public interface Listener {
+		/**
+		 * @param activity Activity whose action bar is being set up
+		 * @param phase One of the <code>PHASE_*</code> constants; phases nest,
+		 *        e.g. {@link #PHASE_INFLATE_HOME} is part of {@link #PHASE_SETUP_ACTION_BAR}
+		 * @param durationNanos Duration of the phase
+		 */
+		public void onPhase(Activity activity, String phase, long durationNanos);
+	}
+
+	private static volatile Listener sListener;
+
+	private ActionBarTracing() {
+	}
+
+	/**
+	 * @param listener The listener, or null to stop reporting phases to it
+	 */
+	public static void setListener(Listener listener) {
+		sListener = listener;
+	}
+
+	/**
+	 * Starts a phase, named when it ends.
+	 * @return The start time to pass to {@link #endPhase(Activity, String, long)},
+	 *         or 0 if tracing is off.
+	 */
+	static long beginPhase() {
+		if (sListener == null) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	static void endPhase(Activity activity, String phase, long start) {
+		if (start == 0) {
+			return;
+		}
+		final long duration = System.nanoTime() - start;
+		final Listener listener = sListener;
+		if (listener != null) {
+			listener.onPhase(activity, phase, duration);
+		}
+	}
+}
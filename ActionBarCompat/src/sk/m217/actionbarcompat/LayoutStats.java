@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+/**
+ * Counts and durations of the measure, layout and draw passes of an
+ * {@link ActionBarContainer}, broken down by the action bar call that
+ * requested them. A pass requested by several calls counts for each of them.
+ * Only accessed on the UI thread.
+ */
+public final class LayoutStats {
+
+	/** Passes not requested by the action bar, e.g. by the activity's own layout. */
+	public static final int CAUSE_OTHER = 0;
+	/** Setting up the action bar in {@link ActionBarHelperBase#initActionBar()}. */
+	public static final int CAUSE_SETUP = 1;
+	/** Adding an action item view. */
+	public static final int CAUSE_ADD_ACTION_ITEM = 2;
+	/** A presenter updating the view of a changed menu item. */
+	public static final int CAUSE_UPDATE_ITEM = 3;
+	public static final int CAUSE_SET_TITLE = 4;
+	public static final int CAUSE_SET_ICON = 5;
+	public static final int CAUSE_DISPLAY_OPTIONS = 6;
+	public static final int CAUSE_EXPAND_ACTION_VIEW = 7;
+	public static final int CAUSE_COLLAPSE_ACTION_VIEW = 8;
+	public static final int CAUSE_REFRESH_STATE = 9;
+	public static final int CAUSE_COUNT = 10;
+
+	private static final String[] CAUSE_NAMES = {
+		"other", "setup", "addActionItem", "updateItem", "setTitle", "setIcon",
+		"displayOptions", "expandActionView", "collapseActionView", "refreshState"
+	};
+
+	private final int[] mLayoutRequests = new int[CAUSE_COUNT];
+	private final int[] mMeasures = new int[CAUSE_COUNT];
+	private final int[] mLayouts = new int[CAUSE_COUNT];
+	private final int[] mDraws = new int[CAUSE_COUNT];
+	private final long[] mMeasureNanos = new long[CAUSE_COUNT];
+	private final long[] mLayoutNanos = new long[CAUSE_COUNT];
+	private final long[] mDrawNanos = new long[CAUSE_COUNT];
+	private long mLastMeasureNanos;
+	private long mLastLayoutNanos;
+
+	public static String getCauseName(int cause) {
+		return CAUSE_NAMES[cause];
+	}
+
+	void onLayoutRequested(int cause) {
+		mLayoutRequests[cause]++;
+	}
+
+	void onMeasured(int causes, long nanos) {
+		mLastMeasureNanos = nanos;
+		add(mMeasures, mMeasureNanos, causes, nanos);
+	}
+
+	void onLaidOut(int causes, long nanos) {
+		mLastLayoutNanos = nanos;
+		add(mLayouts, mLayoutNanos, causes, nanos);
+	}
+
+	void onDrawn(int causes, long nanos) {
+		add(mDraws, mDrawNanos, causes, nanos);
+	}
+
+	/**
+	 * @param causes Bit mask of causes, 1 &lt;&lt; CAUSE_*; 0 counts as {@link #CAUSE_OTHER}
+	 */
+	private static void add(int[] counts, long[] durations, int causes, long nanos) {
+		if (causes == 0) {
+			causes = 1 << CAUSE_OTHER;
+		}
+		while (causes != 0) {
+			final int cause = Integer.numberOfTrailingZeros(causes);
+			counts[cause]++;
+			durations[cause] += nanos;
+			causes &= causes - 1;
+		}
+	}
+
+	public int getLayoutRequests(int cause) {
+		return mLayoutRequests[cause];
+	}
+
+	public int getMeasures(int cause) {
+		return mMeasures[cause];
+	}
+
+	public int getLayouts(int cause) {
+		return mLayouts[cause];
+	}
+
+	public int getDraws(int cause) {
+		return mDraws[cause];
+	}
+
+	public long getMeasureNanos(int cause) {
+		return mMeasureNanos[cause];
+	}
+
+	public long getLayoutNanos(int cause) {
+		return mLayoutNanos[cause];
+	}
+
+	public long getDrawNanos(int cause) {
+		return mDrawNanos[cause];
+	}
+
+	/**
+	 * @return Duration of the latest measure pass.
+	 */
+	public long getLastMeasureNanos() {
+		return mLastMeasureNanos;
+	}
+
+	/**
+	 * @return Duration of the latest layout pass.
+	 */
+	public long getLastLayoutNanos() {
+		return mLastLayoutNanos;
+	}
+
+	/**
+	 * @return Layout requests of all causes.
+	 */
+	public int getTotalLayoutRequests() {
+		int total = 0;
+		for (int i = 0; i < CAUSE_COUNT; i++) {
+			total += mLayoutRequests[i];
+		}
+		return total;
+	}
+
+	public void reset() {
+		for (int i = 0; i < CAUSE_COUNT; i++) {
+			mLayoutRequests[i] = 0;
+			mMeasures[i] = 0;
+			mLayouts[i] = 0;
+			mDraws[i] = 0;
+			mMeasureNanos[i] = 0;
+			mLayoutNanos[i] = 0;
+			mDrawNanos[i] = 0;
+		}
+		mLastMeasureNanos = 0;
+		mLastLayoutNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < CAUSE_COUNT; i++) {
+			if (mLayoutRequests[i] == 0 && mMeasures[i] == 0 && mLayouts[i] == 0
+					&& mDraws[i] == 0) {
+				continue;
+			}
+			sb.append(CAUSE_NAMES[i]).append(": requests=").append(mLayoutRequests[i])
+					.append(" measure=").append(mMeasures[i])
+					.append('/').append(mMeasureNanos[i] / 1000).append("us")
+					.append(" layout=").append(mLayouts[i])
+					.append('/').append(mLayoutNanos[i] / 1000).append("us")
+					.append(" draw=").append(mDraws[i])
+					.append('/').append(mDrawNanos[i] / 1000).append("us\n");
+		}
+		return sb.toString();
+	}
+}
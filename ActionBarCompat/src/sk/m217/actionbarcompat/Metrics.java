@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+/**
+ * Receives counts of the work done by the compatibility action bar, see
+ * {@link ActionBarMetrics#setMetrics(Metrics)}. Methods are called on the
+ * thread doing the work, usually the UI thread, and must return quickly.
+ */
+public interface Metrics {
+
+	/** Reports nothing, installed by default. */
+	public static final Metrics NONE = new Metrics() {
+		public void onPresenterDispatch(int change) {
+		}
+
+		public void onActionButtonCreated() {
+		}
+
+		public void onMenuParsed(int menuRes) {
+		}
+
+		public void onExpandActionView() {
+		}
+
+		public void onCollapseActionView() {
+		}
+
+		public void onIconLoaded() {
+		}
+	};
+
+	/**
+	 * A presenter was notified of an item change.
+	 * @param change The <code>SimpleMenu.ITEM_CHANGED_*</code> flags it received
+	 */
+	public void onPresenterDispatch(int change);
+
+	/** A view for an action item was added to the action bar. */
+	public void onActionButtonCreated();
+
+	/** A menu resource was parsed from XML. */
+	public void onMenuParsed(int menuRes);
+
+	/** Expanding an action view was requested from the presenters. */
+	public void onExpandActionView();
+
+	/** Collapsing an action view was requested from the presenters. */
+	public void onCollapseActionView();
+
+	/** An item icon was loaded from a drawable resource. */
+	public void onIconLoaded();
+}
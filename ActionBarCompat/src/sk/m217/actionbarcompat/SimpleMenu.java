@@ -19,14 +19,22 @@
 
 package sk.m217.actionbarcompat;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
 import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -42,26 +50,172 @@ public class SimpleMenu implements Menu {
 
     private Context mContext;
     private Resources mResources;
+    private final SimpleMenuResources mMenuResources;
     private ArrayList<SimpleMenuItem> mItems;
-    private CopyOnWriteArrayList<WeakReference<SimpleMenuPresenter>> mPresenters =
-            new CopyOnWriteArrayList<WeakReference<SimpleMenuPresenter>>();
+    /**
+     * Maps item id to the first item in menu order with that id. Kept current
+     * by every add and remove, so lookups never rebuild it.
+     */
+    private final SparseArray<SimpleMenuItem> mItemsById = new SparseArray<SimpleMenuItem>();
+    /** Items added while an item with the same id was already in the menu. */
+    private int mDuplicateIds = 0;
+    /*
+     * Visible items, rebuilt by buildVisibleItems() after items are added,
+     * removed or change their visibility.
+     */
+    private final ArrayList<SimpleMenuItem> mVisibleItems = new ArrayList<SimpleMenuItem>();
+    private boolean mVisibleItemsDirty = false;
+    /**
+     * Registered presenters. The array is never modified once assigned, adding
+     * or removing a presenter replaces it, so dispatch can walk it without
+     * copying even if a presenter changes the registrations while notified.
+     */
+    private PresenterRef[] mPresenters = NO_PRESENTERS;
+    /** Presenters registered for each single ITEM_CHANGED_* flag, indexed by its bit. */
+    private PresenterRef[][] mPresentersByChange = newPresentersByChange();
+    private final ReferenceQueue<SimpleMenuPresenter> mPresenterQueue =
+            new ReferenceQueue<SimpleMenuPresenter>();
     private SimpleMenuItem mExpandedItem;
     private Callback mCallback;
+    /** Items removed by clear(), reused by addInternal(). */
+    private final ArrayList<SimpleMenuItem> mRecycledItems = new ArrayList<SimpleMenuItem>();
+    private int mBulkAddDepth = 0;
+    private boolean mBulkAddUnsorted = false;
+    private int mUpdateDepth = 0;
+    private final ArrayList<SimpleMenuItem> mDirtyItems = new ArrayList<SimpleMenuItem>();
+    private boolean mDeferPresenterUpdates = false;
+    private boolean mFlushPosted = false;
+    /** Posts deferred work to the main thread, created on first use, see {@link #getHandler()}. */
+    private volatile Handler mHandler;
+    /** The latest model published from any thread and not yet applied. */
+    private final AtomicReference<SimpleMenuModel> mPublishedModel =
+            new AtomicReference<SimpleMenuModel>();
+    /** Items changed on other threads, waiting to be delivered on the main thread. */
+    private final ConcurrentLinkedQueue<SimpleMenuItem> mRemoteChangedItems =
+            new ConcurrentLinkedQueue<SimpleMenuItem>();
+    private final AtomicBoolean mRemoteChangesPosted = new AtomicBoolean();
+    /** Set once an item is changed on another thread, see {@link #clear()}. */
+    private volatile boolean mItemsShared = false;
+    private SimpleMenuTrace.Recorder mTraceRecorder;
 
-    static final int ITEM_CHANGED_NEW = 0;
-    static final int ITEM_CHANGED_TITLE = 1;
-    static final int ITEM_CHANGED_ICON = 2;
-    static final int ITEM_CHANGED_ACTION = 3;
-    static final int ITEM_CHANGED_ACTION_VIEW = 4;
-    static final int ITEM_CHANGED_VISIBILITY = 5;
+    private final Runnable mFlushRunnable = new Runnable() {
+    	@Override
+    	public void run() {
+    		mFlushPosted = false;
+    		if (mUpdateDepth == 0) {
+    			dispatchPendingChanges();
+    		}
+    	}
+    };
+
+    private final Runnable mApplyModelRunnable = new Runnable() {
+    	@Override
+    	public void run() {
+    		final SimpleMenuModel model = mPublishedModel.getAndSet(null);
+    		if (model != null) {
+    			applyModel(model);
+    		}
+    	}
+    };
+
+    private final Runnable mRemoteChangesRunnable = new Runnable() {
+    	@Override
+    	public void run() {
+    		mRemoteChangesPosted.set(false);
+    		// One transaction for everything changed since the last run.
+    		beginUpdate();
+    		try {
+    			SimpleMenuItem item;
+    			while ((item = mRemoteChangedItems.poll()) != null) {
+    				final int changes = item.takeRemotePendingChanges();
+    				if (changes != 0) {
+    					onItemChanged(item, changes);
+    				}
+    			}
+    		} finally {
+    			endUpdate();
+    		}
+    	}
+    };
+
+    /*
+     * Item change flags. A presenter may receive several of them combined
+     * when the changes were made within beginUpdate()/endUpdate(), and only
+     * receives the ones it registered for, see addMenuPresenter(SimpleMenuPresenter, int).
+     */
+    public static final int ITEM_CHANGED_NEW = 1 << 0;
+    public static final int ITEM_CHANGED_TITLE = 1 << 1;
+    public static final int ITEM_CHANGED_ICON = 1 << 2;
+    public static final int ITEM_CHANGED_ACTION = 1 << 3;
+    public static final int ITEM_CHANGED_ACTION_VIEW = 1 << 4;
+    public static final int ITEM_CHANGED_VISIBILITY = 1 << 5;
+    public static final int ITEM_CHANGED_ALL = (1 << 6) - 1;
+    static final int ITEM_CHANGE_KINDS = 6;
+
+    private static final int MAX_RECYCLED_ITEMS = 32;
+
+    /**
+     * Maps menu categories to the order in which their items are shown, the
+     * same way as <code>com.android.internal.view.menu.MenuBuilder</code>.
+     */
+    private static final int[] sCategoryToOrder = new int[] {
+        1, /* No category */
+        4, /* CONTAINER */
+        5, /* SYSTEM */
+        3, /* SECONDARY */
+        2, /* ALTERNATIVE */
+        0, /* SELECTED_ALTERNATIVE */
+    };
+
+    private static final Comparator<SimpleMenuItem> ORDERING_COMPARATOR =
+    		new Comparator<SimpleMenuItem>() {
+    	@Override
+    	public int compare(SimpleMenuItem lhs, SimpleMenuItem rhs) {
+    		final int l = lhs.getOrdering();
+    		final int r = rhs.getOrdering();
+    		return l < r ? -1 : (l == r ? 0 : 1);
+    	}
+    };
+
+    private static final PresenterRef[] NO_PRESENTERS = new PresenterRef[0];
+
+    private static final class PresenterRef extends WeakReference<SimpleMenuPresenter> {
+    	final int mChangeMask;
+
+    	PresenterRef(SimpleMenuPresenter presenter, int changeMask,
+    			ReferenceQueue<SimpleMenuPresenter> queue) {
+    		super(presenter, queue);
+    		mChangeMask = changeMask;
+    	}
+    }
+
+    private static PresenterRef[][] newPresentersByChange() {
+    	final PresenterRef[][] byChange = new PresenterRef[ITEM_CHANGE_KINDS][];
+    	for (int i = 0; i < ITEM_CHANGE_KINDS; i++) {
+    		byChange[i] = NO_PRESENTERS;
+    	}
+    	return byChange;
+    }
 
     public interface Callback {
     	public boolean onMenuItemSelected(SimpleMenu menu, MenuItem item);
     }
 
     public SimpleMenu(Context context) {
+        this(context, new SimpleMenuResources.ContextResources(context));
+    }
+
+    /**
+     * Creates a menu that loads titles, icons and action views through the
+     * given resources instead of those of the context.
+     * @param context Context of the menu, passed to its presenters and used to
+     *        start item intents. May be null if neither is needed.
+     * @param resources Resolver for the resources referenced by the items
+     */
+    public SimpleMenu(Context context, SimpleMenuResources resources) {
         mContext = context;
-        mResources = context.getResources();
+        mResources = context != null ? context.getResources() : null;
+        mMenuResources = resources;
         mItems = new ArrayList<SimpleMenuItem>();
     }
 
@@ -73,14 +227,36 @@ public class SimpleMenu implements Menu {
         return mResources;
     }
 
+    public SimpleMenuResources getMenuResources() {
+        return mMenuResources;
+    }
+
     /**
      * Add a presenter to this menu. This will only hold a WeakReference;
      * you do not need to explicitly remove a presenter, but you can using
-     * {@link #removeMenuPresenter(MenuPresenter)}.
+     * {@link #removeMenuPresenter(SimpleMenuPresenter)}.
+     * The presenter is notified of all item changes.
      * @param presenter The presenter to add
      */
     public void addMenuPresenter(SimpleMenuPresenter presenter) {
-    	mPresenters.add(new WeakReference<SimpleMenuPresenter>(presenter));
+    	addMenuPresenter(presenter, ITEM_CHANGED_ALL);
+    }
+
+    /**
+     * Add a presenter to this menu that is only notified of the given kinds
+     * of item changes. It is still asked to expand and collapse action views.
+     * @param presenter The presenter to add
+     * @param changeMask Bitmask of ITEM_CHANGED_* flags the presenter handles,
+     *        0 if it does not handle item changes at all
+     */
+    public void addMenuPresenter(SimpleMenuPresenter presenter, int changeMask) {
+    	purgeClearedPresenters();
+    	final PresenterRef[] presenters = mPresenters;
+    	final PresenterRef[] newPresenters = new PresenterRef[presenters.length + 1];
+    	System.arraycopy(presenters, 0, newPresenters, 0, presenters.length);
+    	newPresenters[presenters.length] = new PresenterRef(presenter,
+    			changeMask & ITEM_CHANGED_ALL, mPresenterQueue);
+    	setPresenters(newPresenters);
     	presenter.initForMenu(mContext, this);
     }
 
@@ -90,24 +266,108 @@ public class SimpleMenu implements Menu {
      * @param presenter The presenter to remove
      */
     public void removeMenuPresenter(SimpleMenuPresenter presenter) {
-    	for (WeakReference<SimpleMenuPresenter> ref : mPresenters) {
-    		final SimpleMenuPresenter item = ref.get();
-    		if (item == null || item == presenter) {
-    			mPresenters.remove(ref);
+    	removePresenters(presenter);
+    }
+
+    /**
+     * Drops the presenters that have been garbage collected, if the reference
+     * queue reports any, in a single pass over the registrations.
+     */
+    private void purgeClearedPresenters() {
+    	if (mPresenterQueue.poll() == null) {
+    		return;
+    	}
+    	while (mPresenterQueue.poll() != null) {
+    		// Drain, the pass below handles every cleared reference at once.
+    	}
+    	removePresenters(null);
+    }
+
+    /**
+     * Replaces the registrations with the ones that are neither cleared nor
+     * refer to the given presenter.
+     */
+    private void removePresenters(SimpleMenuPresenter presenter) {
+    	final PresenterRef[] presenters = mPresenters;
+    	int kept = 0;
+    	for (int i = 0; i < presenters.length; i++) {
+    		final SimpleMenuPresenter p = presenters[i].get();
+    		if (p != null && p != presenter) {
+    			kept++;
     		}
     	}
+    	if (kept == presenters.length) {
+    		return;
+    	}
+    	final PresenterRef[] newPresenters = kept == 0 ? NO_PRESENTERS : new PresenterRef[kept];
+    	int j = 0;
+    	for (int i = 0; i < presenters.length && j < kept; i++) {
+    		final SimpleMenuPresenter p = presenters[i].get();
+    		if (p != null && p != presenter) {
+    			newPresenters[j++] = presenters[i];
+    		}
+    	}
+    	setPresenters(newPresenters);
+    }
+
+    /**
+     * Publishes a new set of registrations together with the per-change
+     * dispatch lists derived from it.
+     */
+    private void setPresenters(PresenterRef[] presenters) {
+    	final PresenterRef[][] byChange = newPresentersByChange();
+    	for (int kind = 0; kind < ITEM_CHANGE_KINDS; kind++) {
+    		final int flag = 1 << kind;
+    		int count = 0;
+    		for (int i = 0; i < presenters.length; i++) {
+    			if ((presenters[i].mChangeMask & flag) != 0) {
+    				count++;
+    			}
+    		}
+    		if (count == 0) {
+    			continue;
+    		}
+    		final PresenterRef[] list = new PresenterRef[count];
+    		int j = 0;
+    		for (int i = 0; i < presenters.length; i++) {
+    			if ((presenters[i].mChangeMask & flag) != 0) {
+    				list[j++] = presenters[i];
+    			}
+    		}
+    		byChange[kind] = list;
+    	}
+    	mPresenters = presenters;
+    	mPresentersByChange = byChange;
     }
 
     private void dispatchPresenterUpdate(SimpleMenuItem item, int change) {
-    	if (mPresenters.isEmpty()) {
+    	if (change == 0) {
     		return;
     	}
-    	for (WeakReference<SimpleMenuPresenter> ref : mPresenters) {
-    		final SimpleMenuPresenter presenter = ref.get();
-    		if (presenter == null) {
-    			mPresenters.remove(ref);
-    		} else {
-    			presenter.updateMenuView(this, item, change);
+    	purgeClearedPresenters();
+    	if ((change & (change - 1)) == 0) {
+    		// A single kind of change, only walk the presenters registered for it.
+    		final PresenterRef[] presenters =
+    				mPresentersByChange[Integer.numberOfTrailingZeros(change)];
+    		for (int i = 0; i < presenters.length; i++) {
+    			final SimpleMenuPresenter presenter = presenters[i].get();
+    			if (presenter != null) {
+    				ActionBarMetrics.get().onPresenterDispatch(change);
+    				presenter.updateMenuView(this, item, change);
+    			}
+    		}
+    		return;
+    	}
+    	final PresenterRef[] presenters = mPresenters;
+    	for (int i = 0; i < presenters.length; i++) {
+    		final int interested = change & presenters[i].mChangeMask;
+    		if (interested == 0) {
+    			continue;
+    		}
+    		final SimpleMenuPresenter presenter = presenters[i].get();
+    		if (presenter != null) {
+    			ActionBarMetrics.get().onPresenterDispatch(interested);
+    			presenter.updateMenuView(this, item, interested);
     		}
     	}
     }
@@ -116,6 +376,22 @@ public class SimpleMenu implements Menu {
     	mCallback = cb;
     }
 
+    /**
+     * Records the operations on this menu and its items to a trace, see
+     * {@link SimpleMenuTrace}.
+     * @param recorder The recorder, or null to stop recording
+     */
+    public void setTraceRecorder(SimpleMenuTrace.Recorder recorder) {
+    	mTraceRecorder = recorder;
+    }
+
+    void trace(int op, int itemId, int arg) {
+    	final SimpleMenuTrace.Recorder recorder = mTraceRecorder;
+    	if (recorder != null) {
+    		recorder.record(op, itemId, arg);
+    	}
+    }
+
     boolean dispatchMenuItemSelected(SimpleMenu menu, MenuItem item) {
     	return mCallback != null && mCallback.onMenuItemSelected(menu, item);
     }
@@ -125,7 +401,7 @@ public class SimpleMenu implements Menu {
     }
 
     public MenuItem add(int titleRes) {
-        return addInternal(0, 0, mResources.getString(titleRes));
+        return addInternal(0, 0, mMenuResources.getText(titleRes));
     }
 
     public MenuItem add(int groupId, int itemId, int order, CharSequence title) {
@@ -133,68 +409,225 @@ public class SimpleMenu implements Menu {
     }
 
     public MenuItem add(int groupId, int itemId, int order, int titleRes) {
-        return addInternal(itemId, order, mResources.getString(titleRes));
+        return addInternal(itemId, order, mMenuResources.getText(titleRes));
+    }
+
+    /**
+     * Starts adding several items at once. Until the matching
+     * {@link #endBulkAdd()}, added items are appended in call order and
+     * {@link #getItem(int)} does not reflect their final ordering; the whole
+     * menu is sorted once when the outermost bulk add ends. Calls may nest.
+     */
+    public void beginBulkAdd() {
+    	mBulkAddDepth++;
+    }
+
+    /**
+     * Finishes adding items started with {@link #beginBulkAdd()}, sorting
+     * the menu by item order if anything was added out of order.
+     */
+    public void endBulkAdd() {
+    	if (mBulkAddDepth == 0) {
+    		throw new IllegalStateException("endBulkAdd() called without beginBulkAdd()");
+    	}
+    	if (--mBulkAddDepth == 0 && mBulkAddUnsorted) {
+    		// Collections.sort is stable, items with equal order keep their add order.
+    		Collections.sort(mItems, ORDERING_COMPARATOR);
+    		mBulkAddUnsorted = false;
+    		if (mDuplicateIds > 0) {
+    			// Sorting may have moved another item with the same id first.
+    			rebuildItemsById();
+    		}
+    		mVisibleItemsDirty = true;
+    	}
     }
 
     /**
      * Adds an item to the menu.  The other add methods funnel to this.
      */
     private MenuItem addInternal(int itemId, int order, CharSequence title) {
-        final SimpleMenuItem item = new SimpleMenuItem(this, itemId, order, title);
-        mItems.add(findInsertIndex(mItems, order), item);
+        trace(SimpleMenuTrace.OP_ADD, itemId, order);
+        final int ordering = getOrdering(order);
+        final SimpleMenuItem item = obtainItem(itemId, order, ordering, title);
+        final int index;
+        if (mBulkAddDepth > 0) {
+        	index = mItems.size();
+        	if (index > 0 && mItems.get(index - 1).getOrdering() > ordering) {
+        		mBulkAddUnsorted = true;
+        	}
+        } else {
+        	index = findInsertIndex(mItems, ordering);
+        }
+        mItems.add(index, item);
+        final SimpleMenuItem first = mItemsById.get(itemId);
+        if (first == null) {
+        	mItemsById.put(itemId, item);
+        } else {
+        	mDuplicateIds++;
+        	// Outside a bulk add the item went in after all items of lower or
+        	// equal ordering, so it only comes first if the other one orders after it.
+        	if (mBulkAddDepth == 0 && first.getOrdering() > ordering) {
+        		mItemsById.put(itemId, item);
+        	}
+        }
+        mVisibleItemsDirty = true;
         onItemChanged(item, ITEM_CHANGED_NEW);
         return item;
     }
 
-    private static int findInsertIndex(ArrayList<? extends MenuItem> items, int order) {
-        for (int i = items.size() - 1; i >= 0; i--) {
-            MenuItem item = items.get(i);
-            if (item.getOrder() <= order) {
-                return i + 1;
+    /**
+     * Returns the ordering across all categories for the given category order,
+     * see <code>com.android.internal.view.menu.MenuBuilder#getOrdering</code>.
+     * @param categoryOrder The category order, as passed to {@link #add(int, int, int, CharSequence)}
+     * @return An ordering that sorts items by category first and by order within it second
+     */
+    static int getOrdering(int categoryOrder) {
+        final int index = (categoryOrder & CATEGORY_MASK) >> CATEGORY_SHIFT;
+
+        if (index < 0 || index >= sCategoryToOrder.length) {
+            throw new IllegalArgumentException("order does not contain a valid category.");
+        }
+
+        return (sCategoryToOrder[index] << CATEGORY_SHIFT) | (categoryOrder & USER_MASK);
+    }
+
+    /**
+     * Returns the index after the last item whose ordering is not greater than
+     * the given one, so that items of equal ordering keep their add order.
+     */
+    private static int findInsertIndex(ArrayList<SimpleMenuItem> items, int ordering) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (items.get(mid).getOrdering() <= ordering) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
 
-        return 0;
+        return low;
     }
 
+    /**
+     * Returns the index of the first item with the given id. When several
+     * items share an id, the first one wins, as it did with the linear scan.
+     */
     public int findItemIndex(int id) {
-        final int size = size();
+        final SimpleMenuItem item = mItemsById.get(id);
+        return item != null ? indexOfItem(item) : -1;
+    }
 
-        for (int i = 0; i < size; i++) {
-            SimpleMenuItem item = mItems.get(i);
-            if (item.getItemId() == id) {
-                return i;
+    /**
+     * Returns the index of an item of this menu, found by binary search on
+     * its ordering unless a bulk add left the items unsorted.
+     */
+    private int indexOfItem(SimpleMenuItem item) {
+        if (mBulkAddUnsorted) {
+        	return mItems.indexOf(item);
+        }
+        final int ordering = item.getOrdering();
+        int low = 0;
+        int high = mItems.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mItems.get(mid).getOrdering() < ordering) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-
+        // Items of equal ordering are adjacent, in add order.
+        final int size = mItems.size();
+        for (int i = low; i < size; i++) {
+        	if (mItems.get(i) == item) {
+        		return i;
+        	}
+        }
         return -1;
     }
 
-    public void removeItem(int itemId) {
-        removeItemAtInt(findItemIndex(itemId));
+    /**
+     * Maps each id to its first item again, after the items were reordered.
+     */
+    private void rebuildItemsById() {
+    	mItemsById.clear();
+    	final int size = mItems.size();
+    	for (int i = 0; i < size; i++) {
+    		final SimpleMenuItem item = mItems.get(i);
+    		if (mItemsById.indexOfKey(item.getItemId()) < 0) {
+    			mItemsById.put(item.getItemId(), item);
+    		}
+    	}
     }
 
-    private void removeItemAtInt(int index) {
-        if ((index < 0) || (index >= mItems.size())) {
+    public void removeItem(int itemId) {
+        trace(SimpleMenuTrace.OP_REMOVE, itemId, 0);
+        final SimpleMenuItem item = mItemsById.get(itemId);
+        if (item == null) {
             return;
         }
+        final int index = indexOfItem(item);
         mItems.remove(index);
+        mItemsById.remove(itemId);
+        if (mDuplicateIds > 0) {
+        	// The next item with the same id, if any, follows the removed one.
+        	final int size = mItems.size();
+        	for (int i = index; i < size; i++) {
+        		final SimpleMenuItem next = mItems.get(i);
+        		if (next.getItemId() == itemId) {
+        			mItemsById.put(itemId, next);
+        			mDuplicateIds--;
+        			break;
+        		}
+        	}
+        }
+        mVisibleItemsDirty = true;
+    }
+
+    /**
+     * Returns a recycled item reset to the given values, or a new one if
+     * there is none.
+     */
+    private SimpleMenuItem obtainItem(int itemId, int order, int ordering, CharSequence title) {
+        final int recycled = mRecycledItems.size();
+        if (recycled == 0) {
+        	return new SimpleMenuItem(this, itemId, order, ordering, title);
+        }
+        final SimpleMenuItem item = mRecycledItems.remove(recycled - 1);
+        item.reset(itemId, order, ordering, title);
+        return item;
     }
 
+    /**
+     * Removes all items. Up to {@value #MAX_RECYCLED_ITEMS} of the removed
+     * items are kept and reset for reuse by the following add calls, so
+     * callers must not hold on to items across a clear(). Once an item of
+     * this menu has been changed on another thread, which may still hold on
+     * to items, removed items are no longer reused.
+     */
     public void clear() {
+        trace(SimpleMenuTrace.OP_CLEAR, 0, 0);
+        final int size = mItemsShared ? 0 : mItems.size();
+        for (int i = 0; i < size && mRecycledItems.size() < MAX_RECYCLED_ITEMS; i++) {
+        	final SimpleMenuItem item = mItems.get(i);
+        	// Items still referenced from the action bar or waiting for a
+        	// presenter update must not turn into a different item.
+        	if (item != mExpandedItem && item.getView() == null
+        			&& item.getPendingChanges() == 0 && !item.hasRemotePendingChanges()) {
+        		mRecycledItems.add(item);
+        	}
+        }
         mItems.clear();
+        mItemsById.clear();
+        mDuplicateIds = 0;
+        mVisibleItemsDirty = true;
     }
 
     public MenuItem findItem(int id) {
-        final int size = size();
-        for (int i = 0; i < size; i++) {
-            SimpleMenuItem item = mItems.get(i);
-            if (item.getItemId() == id) {
-                return item;
-            }
-        }
-
-        return null;
+        trace(SimpleMenuTrace.OP_FIND, id, 0);
+        return mItemsById.get(id);
     }
 
     public int size() {
@@ -205,6 +638,34 @@ public class SimpleMenu implements Menu {
         return mItems.get(index);
     }
 
+    public boolean hasVisibleItems() {
+        return !getVisibleItems().isEmpty();
+    }
+
+    /**
+     * @return The visible items in menu order. The list is owned by the menu
+     *         and only valid until the next change of its items.
+     */
+    ArrayList<SimpleMenuItem> getVisibleItems() {
+    	buildVisibleItems();
+    	return mVisibleItems;
+    }
+
+    private void buildVisibleItems() {
+    	if (!mVisibleItemsDirty) {
+    		return;
+    	}
+    	mVisibleItems.clear();
+    	final int size = mItems.size();
+    	for (int i = 0; i < size; i++) {
+    		final SimpleMenuItem item = mItems.get(i);
+    		if (item.isVisible()) {
+    			mVisibleItems.add(item);
+    		}
+    	}
+    	mVisibleItemsDirty = false;
+    }
+
     /**
      * Called when a menu item with a collapsable action view should expand its
      * action view.
@@ -212,19 +673,16 @@ public class SimpleMenu implements Menu {
      * @return True if this presenter expanded the action view, false otherwise.
      */
     public boolean expandItemActionView(SimpleMenuItem item) {
-    	if (mPresenters.isEmpty()) {
-    		return false;
-    	}
+    	trace(SimpleMenuTrace.OP_EXPAND, item.getItemId(), 0);
+    	ActionBarMetrics.get().onExpandActionView();
+    	purgeClearedPresenters();
+    	final PresenterRef[] presenters = mPresenters;
 
     	boolean expanded = false;
-    	for (WeakReference<SimpleMenuPresenter> ref : mPresenters) {
-    		final SimpleMenuPresenter presenter = ref.get();
-    		if (presenter == null) {
-    			mPresenters.remove(ref);
-    		} else {
-    			if ((expanded = presenter.expandItemActionView(this, item))) {
-    				break;
-    			}
+    	for (int i = 0; i < presenters.length; i++) {
+    		final SimpleMenuPresenter presenter = presenters[i].get();
+    		if (presenter != null && (expanded = presenter.expandItemActionView(this, item))) {
+    			break;
     		}
     	}
     	if (expanded) {
@@ -240,19 +698,19 @@ public class SimpleMenu implements Menu {
      * @return True if this presenter collapsed the action view, false otherwise. 
      */
     public boolean collapseItemActionView(SimpleMenuItem item) {
-    	if (mPresenters.isEmpty() || mExpandedItem != item) {
+    	if (mExpandedItem != item) {
     		return false;
     	}
+    	trace(SimpleMenuTrace.OP_COLLAPSE, item.getItemId(), 0);
+    	ActionBarMetrics.get().onCollapseActionView();
+    	purgeClearedPresenters();
+    	final PresenterRef[] presenters = mPresenters;
 
     	boolean collapsed = false;
-    	for (WeakReference<SimpleMenuPresenter> ref : mPresenters) {
-    		final SimpleMenuPresenter presenter = ref.get();
-    		if (presenter == null) {
-    			mPresenters.remove(ref);
-    		} else {
-    			if ((collapsed = presenter.collapseItemActionView(this, item))) {
-    				break;
-    			}
+    	for (int i = 0; i < presenters.length; i++) {
+    		final SimpleMenuPresenter presenter = presenters[i].get();
+    		if (presenter != null && (collapsed = presenter.collapseItemActionView(this, item))) {
+    			break;
     		}
     	}
     	if (collapsed) {
@@ -265,8 +723,248 @@ public class SimpleMenu implements Menu {
     	return mExpandedItem;
     }
 
+    /**
+     * Starts a transaction of item changes. Until the matching
+     * {@link #endUpdate()}, changes to items of this menu are only recorded,
+     * and each changed item is then delivered to the presenters once with all
+     * of its changes combined. Calls may nest.
+     */
+    public void beginUpdate() {
+    	mUpdateDepth++;
+    }
+
+    /**
+     * Ends a transaction started with {@link #beginUpdate()}. When the
+     * outermost transaction ends, the recorded changes are dispatched to the
+     * presenters, or scheduled for the next frame if presenter updates are
+     * deferred.
+     */
+    public void endUpdate() {
+    	if (mUpdateDepth == 0) {
+    		throw new IllegalStateException("endUpdate() called without beginUpdate()");
+    	}
+    	if (--mUpdateDepth > 0 || mDirtyItems.isEmpty()) {
+    		return;
+    	}
+    	if (mDeferPresenterUpdates) {
+    		scheduleFlush();
+    	} else {
+    		dispatchPendingChanges();
+    	}
+    }
+
+    /**
+     * Sets whether item changes are delivered to the presenters right away or
+     * collected and delivered together on the next pass of the main thread's
+     * message loop. Deferring collapses any number of changes made within one
+     * frame into a single presenter pass, and so a single layout of the action
+     * bar. Turning deferral off delivers the pending changes immediately.
+     * @param defer True to defer presenter updates to the next frame.
+     */
+    public void setDeferPresenterUpdates(boolean defer) {
+    	mDeferPresenterUpdates = defer;
+    	if (!defer) {
+    		flushPresenterUpdates();
+    	}
+    }
+
+    public boolean isDeferPresenterUpdates() {
+    	return mDeferPresenterUpdates;
+    }
+
+    /**
+     * Delivers deferred item changes to the presenters now instead of waiting
+     * for the next frame. Does nothing inside a {@link #beginUpdate()}
+     * transaction, its changes are delivered when it ends.
+     */
+    public void flushPresenterUpdates() {
+    	if (mFlushPosted) {
+    		getHandler().removeCallbacks(mFlushRunnable);
+    		mFlushPosted = false;
+    	}
+    	if (mUpdateDepth == 0) {
+    		dispatchPendingChanges();
+    	}
+    }
+
+    /**
+     * Replaces all items of this menu with the ones described by the model.
+     * May be called from any thread: the model is handed over atomically and
+     * applied on the main thread in a single pass, so the menu never shows a
+     * partly built set of items. If several models are published before the
+     * main thread gets to them, only the last one is applied. Once applied,
+     * presenters registered for {@link #ITEM_CHANGED_NEW} are notified with a
+     * null item, to bind their views to the new items at once.
+     * @param model The items to show, built with {@link SimpleMenuModel.Builder}
+     */
+    public void publishModel(SimpleMenuModel model) {
+    	if (model == null) {
+    		throw new IllegalArgumentException("model must not be null");
+    	}
+    	if (mPublishedModel.getAndSet(model) != null) {
+    		// Already scheduled, the pending run picks up the newer model.
+    		return;
+    	}
+    	getHandler().post(mApplyModelRunnable);
+    }
+
+    private void applyModel(SimpleMenuModel model) {
+    	beginUpdate();
+    	try {
+    		clear();
+    		addModelItems(model);
+    	} finally {
+    		endUpdate();
+    	}
+    	// Every item was replaced, views bound to the removed ones must move over.
+    	dispatchPresenterUpdate(null, ITEM_CHANGED_NEW);
+    }
+
+    /**
+     * Adds the items described by the model to this menu, in one bulk add and
+     * one update transaction.
+     */
+    void addModelItems(SimpleMenuModel model) {
+    	beginUpdate();
+    	try {
+    		beginBulkAdd();
+    		try {
+    			final SimpleMenuModel.Item[] items = model.mItems;
+    			for (int i = 0; i < items.length; i++) {
+    				final SimpleMenuModel.Item spec = items[i];
+    				final CharSequence title = spec.mTitleRes != 0
+    						? mMenuResources.getText(spec.mTitleRes) : spec.mTitle;
+    				final SimpleMenuItem item =
+    						(SimpleMenuItem) addInternal(spec.mId, spec.mOrder, title);
+    				if (spec.mTitleCondensedRes != 0) {
+    					item.setTitleCondensed(mMenuResources.getText(spec.mTitleCondensedRes));
+    				} else if (spec.mTitleCondensed != null) {
+    					item.setTitleCondensed(spec.mTitleCondensed);
+    				}
+    				if (spec.mIconRes != SimpleMenuItem.NO_ICON) {
+    					item.setIcon(spec.mIconRes);
+    				}
+    				if (spec.mShowAsAction != MenuItemCompat.SHOW_AS_ACTION_NEVER) {
+    					item.setShowAsAction(spec.mShowAsAction);
+    				}
+    				if (spec.mActionLayout != 0) {
+    					item.setActionView(spec.mActionLayout);
+    				}
+    				if (!spec.mVisible) {
+    					item.setVisible(false);
+    				}
+    				item.setEnabled(spec.mEnabled);
+    				item.setIntent(spec.mIntent);
+    			}
+    		} finally {
+    			endBulkAdd();
+    		}
+    	} finally {
+    		endUpdate();
+    	}
+    }
+
+    /**
+     * Creates the handler on the first deferred flush or hand-over, so a menu
+     * model can be built and changed synchronously without a looper, e.g. in
+     * a plain unit test.
+     */
+    private Handler getHandler() {
+    	Handler handler = mHandler;
+    	if (handler == null) {
+    		synchronized (this) {
+    			handler = mHandler;
+    			if (handler == null) {
+    				handler = new Handler(Looper.getMainLooper());
+    				mHandler = handler;
+    			}
+    		}
+    	}
+    	return handler;
+    }
+
+    private void scheduleFlush() {
+    	if (mFlushPosted) {
+    		return;
+    	}
+    	mFlushPosted = true;
+    	getHandler().post(mFlushRunnable);
+    }
+
+    private void dispatchPendingChanges() {
+    	// Items are delivered in the order of their first change. Their changes
+    	// are cleared before they are dispatched, so a presenter may start and
+    	// end another transaction while being notified: items changed again are
+    	// added to the end, and a nested dispatch skips the items already done.
+    	for (int i = 0; i < mDirtyItems.size(); i++) {
+    		final SimpleMenuItem item = mDirtyItems.get(i);
+    		final int changes = item.getPendingChanges();
+    		if (changes == 0) {
+    			continue;
+    		}
+    		item.setPendingChanges(0);
+    		dispatchPresenterUpdate(item, changes);
+    	}
+    	mDirtyItems.clear();
+    }
+
+    /**
+     * Called by items when they change. Item properties other than the action
+     * view may be changed from any thread; changes made off the main thread
+     * are handed over lock-free and delivered to the presenters on the main
+     * thread, coalesced with any other such changes made in the meantime.
+     * Adding and removing items is still only supported on the main thread.
+     * <p>
+     * On the main thread this runs for every item change and allocates
+     * nothing once the dirty item list has grown to its working size, see
+     * SimpleMenuAllocationTest in the test project. Off the main thread, the
+     * hand-over allocates a queue node for an item without pending changes.
+     */
     void onItemChanged(SimpleMenuItem item, int change) {
-    	dispatchPresenterUpdate(item, change);
+    	if (Looper.myLooper() != Looper.getMainLooper()) {
+    		mItemsShared = true;
+    		if (item.addRemotePendingChanges(change) == 0) {
+    			mRemoteChangedItems.offer(item);
+    			if (mRemoteChangesPosted.compareAndSet(false, true)) {
+    				getHandler().post(mRemoteChangesRunnable);
+    			}
+    		}
+    		return;
+    	}
+    	if ((change & ITEM_CHANGED_VISIBILITY) != 0) {
+    		mVisibleItemsDirty = true;
+    	}
+    	if (mUpdateDepth == 0 && !mDeferPresenterUpdates) {
+    		dispatchPresenterUpdate(item, change);
+    		return;
+    	}
+    	final int pending = item.getPendingChanges();
+    	if (pending == 0) {
+    		mDirtyItems.add(item);
+    	}
+    	item.setPendingChanges(pending | change);
+    	if (mUpdateDepth == 0) {
+    		scheduleFlush();
+    	}
+    }
+
+    /**
+     * Called by items before a change that is not delivered to the presenters.
+     * A change on another thread stops recycling, see {@link #clear()}.
+     */
+    void onItemTouched() {
+    	if (!mItemsShared && Looper.myLooper() != Looper.getMainLooper()) {
+    		mItemsShared = true;
+    	}
+    }
+
+    /**
+     * @throws IllegalStateException If not called on the main thread
+     */
+    void checkMainThread(String method) {
+    	if (Looper.myLooper() != Looper.getMainLooper()) {
+    		throw new IllegalStateException(method + " must be called on the main thread");
+    	}
     }
 
     // Unsupported operations.
@@ -308,10 +1006,6 @@ public class SimpleMenu implements Menu {
         throw new UnsupportedOperationException("This operation is not supported for SimpleMenu");
     }
 
-    public boolean hasVisibleItems() {
-        throw new UnsupportedOperationException("This operation is not supported for SimpleMenu");
-    }
-
     public void close() {
         throw new UnsupportedOperationException("This operation is not supported for SimpleMenu");
     }
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.Configuration;
+import android.util.Log;
+
+/**
+ * Binary cache of parsed menu resources in the application's cache directory,
+ * so that a cold process start does not parse menu XML again. Entries are
+ * read through a memory-mapped buffer and written on a background thread.
+ * An entry is only used by the same version of the application package,
+ * and in the configuration it was parsed in.
+ */
+final class SimpleMenuDiskCache {
+    private static final String TAG = "SimpleMenuDiskCache";
+
+    private static final String DIR_NAME = "actionbarcompat-menus";
+    private static final int MAGIC = 0x41424d43;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int FLAG_HAS_TITLE = 0x1;
+    private static final int FLAG_VISIBLE = 0x2;
+    private static final int FLAG_ENABLED = 0x4;
+    private static final int FLAG_HAS_TITLE_CONDENSED = 0x8;
+
+    /** Bytes of an item without its optional title strings. */
+    private static final int MIN_ITEM_BYTES = 4 * 4 + 1 + 3 * 4;
+
+    private static final Executor sWriteExecutor = Executors.newSingleThreadExecutor();
+
+    private static boolean sPackageVersionLoaded;
+    private static int sVersionCode;
+    private static long sPackageTimestamp;
+
+    private SimpleMenuDiskCache() {
+    }
+
+    /**
+     * @return The cached menu, or null if there is none for the current
+     *         package version and configuration. A corrupt or truncated
+     *         entry counts as a miss and is deleted.
+     */
+    static SimpleMenuModel read(Context context, int menuRes, Configuration configuration) {
+        final File file = getFile(context, menuRes, configuration);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            final FileChannel channel = in.getChannel();
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            return readModel(context, buffer, configuration);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read cached menu", e);
+        } catch (BufferUnderflowException e) {
+            Log.w(TAG, "Truncated cached menu " + file);
+            file.delete();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Corrupt cached menu " + file, e);
+            file.delete();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+        return null;
+    }
+
+    private static SimpleMenuModel readModel(Context context, ByteBuffer buffer,
+            Configuration configuration) throws IOException {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            return null;
+        }
+        loadPackageVersion(context);
+        if (buffer.getInt() != sVersionCode || buffer.getLong() != sPackageTimestamp
+                || !configuration.toString().equals(readString(buffer))) {
+            // Stale, the write after the parse replaces it.
+            return null;
+        }
+
+        final SimpleMenuModel.Builder builder = new SimpleMenuModel.Builder();
+        final int size = buffer.getInt();
+        if (size < 0 || size > buffer.remaining() / MIN_ITEM_BYTES) {
+            throw new IllegalStateException("Invalid item count " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            final int id = buffer.getInt();
+            final int order = buffer.getInt();
+            // Throws for an order without a valid category, as adding the item would.
+            SimpleMenu.getOrdering(order);
+            final int titleRes = buffer.getInt();
+            final int titleCondensedRes = buffer.getInt();
+            final int flags = buffer.get();
+            final SimpleMenuModel.ItemBuilder item;
+            if ((flags & FLAG_HAS_TITLE) != 0) {
+                item = builder.add(id, order, readString(buffer));
+            } else {
+                item = builder.add(id, order, titleRes);
+            }
+            if ((flags & FLAG_HAS_TITLE_CONDENSED) != 0) {
+                item.setTitleCondensed(readString(buffer));
+            } else {
+                item.setTitleCondensed(titleCondensedRes);
+            }
+            item.setIcon(buffer.getInt())
+                    .setShowAsAction(buffer.getInt())
+                    .setActionView(buffer.getInt())
+                    .setVisible((flags & FLAG_VISIBLE) != 0)
+                    .setEnabled((flags & FLAG_ENABLED) != 0);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the parsed menu to the cache on a background thread.
+     */
+    static void writeAsync(Context context, int menuRes, Configuration configuration,
+            final SimpleMenuModel model) {
+        final File file = getFile(context, menuRes, configuration);
+        if (file == null) {
+            return;
+        }
+        loadPackageVersion(context);
+        final int versionCode = sVersionCode;
+        final long packageTimestamp = sPackageTimestamp;
+        final String configurationKey = configuration.toString();
+        sWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(file, versionCode, packageTimestamp, configurationKey, model);
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot cache menu", e);
+                }
+            }
+        });
+    }
+
+    private static void write(File file, int versionCode, long packageTimestamp,
+            String configurationKey, SimpleMenuModel model) throws IOException {
+        final File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        // Written aside and renamed, a reader never maps a partial file.
+        final File tmp = new File(dir, file.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(versionCode);
+            out.writeLong(packageTimestamp);
+            writeString(out, configurationKey);
+
+            final SimpleMenuModel.Item[] items = model.mItems;
+            out.writeInt(items.length);
+            for (int i = 0; i < items.length; i++) {
+                final SimpleMenuModel.Item item = items[i];
+                final boolean hasTitle = item.mTitleRes == 0 && item.mTitle != null;
+                final boolean hasTitleCondensed = item.mTitleCondensedRes == 0
+                        && item.mTitleCondensed != null;
+                out.writeInt(item.mId);
+                out.writeInt(item.mOrder);
+                out.writeInt(item.mTitleRes);
+                out.writeInt(item.mTitleCondensedRes);
+                out.writeByte((hasTitle ? FLAG_HAS_TITLE : 0)
+                        | (item.mVisible ? FLAG_VISIBLE : 0)
+                        | (item.mEnabled ? FLAG_ENABLED : 0)
+                        | (hasTitleCondensed ? FLAG_HAS_TITLE_CONDENSED : 0));
+                if (hasTitle) {
+                    writeString(out, item.mTitle.toString());
+                }
+                if (hasTitleCondensed) {
+                    writeString(out, item.mTitleCondensed.toString());
+                }
+                out.writeInt(item.mIconRes);
+                out.writeInt(item.mShowAsAction);
+                out.writeInt(item.mActionLayout);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static File getFile(Context context, int menuRes, Configuration configuration) {
+        final File cacheDir = context.getCacheDir();
+        if (cacheDir == null) {
+            return null;
+        }
+        return new File(new File(cacheDir, DIR_NAME), Integer.toHexString(menuRes) + "-"
+                + Integer.toHexString(configuration.hashCode()));
+    }
+
+    /**
+     * Loads the version of the application package. The timestamp of the
+     * package file also changes when an application is reinstalled without
+     * changing its version code.
+     */
+    private static synchronized void loadPackageVersion(Context context) {
+        if (sPackageVersionLoaded) {
+            return;
+        }
+        try {
+            sVersionCode = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).versionCode;
+        } catch (NameNotFoundException e) {
+            sVersionCode = 0;
+        }
+        sPackageTimestamp = new File(context.getApplicationInfo().sourceDir).lastModified();
+        sPackageVersionLoaded = true;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.util.SparseArray;
+import android.view.InflateException;
+import android.view.Menu;
+
+/**
+ * Inflates menu XML resources into a {@link SimpleMenu}. Unlike the framework
+ * {@link android.view.MenuInflater}, it also reads the action bar attributes
+ * (<code>showAsAction</code>, <code>actionLayout</code>) and reads the XML
+ * only once: every item is added fully configured, and the parsed menu is
+ * kept in {@link SimpleMenuTemplates} for later inflations of the same resource.
+ * <p>
+ * Menus compiled to code at build time, see {@link #registerCompiledMenu(int, CompiledMenu)},
+ * skip the XML altogether.
+ * <p>
+ * Sub-menus are not supported, as by {@link SimpleMenu}.
+ */
+public class SimpleMenuInflater {
+    private static final String XML_MENU = "menu";
+    private static final String XML_GROUP = "group";
+    private static final String XML_ITEM = "item";
+
+    /*
+     * Attributes are resolved through Resources, so that references such as
+     * @bool or @integer are followed. Resources expects the ids sorted.
+     */
+    private static final int[] GROUP_ATTRS = sorted(
+            android.R.attr.menuCategory,
+            android.R.attr.orderInCategory,
+            android.R.attr.visible,
+            android.R.attr.enabled);
+    private static final int GROUP_CATEGORY = index(GROUP_ATTRS, android.R.attr.menuCategory);
+    private static final int GROUP_ORDER = index(GROUP_ATTRS, android.R.attr.orderInCategory);
+    private static final int GROUP_VISIBLE = index(GROUP_ATTRS, android.R.attr.visible);
+    private static final int GROUP_ENABLED = index(GROUP_ATTRS, android.R.attr.enabled);
+
+    private static final int[] ITEM_ATTRS = sorted(
+            android.R.attr.id,
+            android.R.attr.menuCategory,
+            android.R.attr.orderInCategory,
+            android.R.attr.title,
+            android.R.attr.titleCondensed,
+            android.R.attr.icon,
+            android.R.attr.visible,
+            android.R.attr.enabled,
+            android.R.attr.showAsAction,
+            android.R.attr.actionLayout);
+    private static final int ITEM_ID = index(ITEM_ATTRS, android.R.attr.id);
+    private static final int ITEM_CATEGORY = index(ITEM_ATTRS, android.R.attr.menuCategory);
+    private static final int ITEM_ORDER = index(ITEM_ATTRS, android.R.attr.orderInCategory);
+    private static final int ITEM_TITLE = index(ITEM_ATTRS, android.R.attr.title);
+    private static final int ITEM_TITLE_CONDENSED = index(ITEM_ATTRS, android.R.attr.titleCondensed);
+    private static final int ITEM_ICON = index(ITEM_ATTRS, android.R.attr.icon);
+    private static final int ITEM_VISIBLE = index(ITEM_ATTRS, android.R.attr.visible);
+    private static final int ITEM_ENABLED = index(ITEM_ATTRS, android.R.attr.enabled);
+    private static final int ITEM_SHOW_AS_ACTION = index(ITEM_ATTRS, android.R.attr.showAsAction);
+    private static final int ITEM_ACTION_LAYOUT = index(ITEM_ATTRS, android.R.attr.actionLayout);
+
+    /**
+     * Builds the items of a menu resource in code, as generated from the menu
+     * XML by the menu compiler in <code>tools/</code>.
+     */
+    public interface CompiledMenu {
+        /**
+         * @return The items of the menu, with resources referenced by id.
+         */
+        public SimpleMenuModel build();
+    }
+
+    private static final SparseArray<CompiledMenu> sCompiledMenus = new SparseArray<CompiledMenu>();
+    private static final SparseArray<SimpleMenuModel> sCompiledModels =
+            new SparseArray<SimpleMenuModel>();
+
+    private final Context mContext;
+
+    /**
+     * Registers code that builds a menu resource, to be used instead of its XML.
+     * A compiled menu must only be registered for a menu resource that has no
+     * configuration-specific variants.
+     * @param menuRes Resource ID of the menu
+     * @param menu Builds the items of the menu
+     */
+    public static void registerCompiledMenu(int menuRes, CompiledMenu menu) {
+        synchronized (sCompiledMenus) {
+            sCompiledMenus.put(menuRes, menu);
+            sCompiledModels.remove(menuRes);
+        }
+    }
+
+    public SimpleMenuInflater(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Inflates a menu hierarchy from the specified XML resource into the menu.
+     * @param menuRes Resource ID for an XML layout resource to load
+     * @param menu The menu to inflate into. The items are added to any items
+     *        already in the menu.
+     */
+    public void inflate(int menuRes, SimpleMenu menu) {
+        menu.addModelItems(getModel(menuRes));
+    }
+
+    /**
+     * Returns the compiled menu resource if there is one, otherwise the parsed
+     * menu resource, reading the XML only if it was not parsed before in the
+     * current configuration, in this process or, see {@link SimpleMenuDiskCache},
+     * in an earlier one.
+     */
+    SimpleMenuModel getModel(int menuRes) {
+        final SimpleMenuModel compiled = getCompiledModel(menuRes);
+        if (compiled != null) {
+            return compiled;
+        }
+        final Resources resources = mContext.getResources();
+        final Configuration configuration = resources.getConfiguration();
+        SimpleMenuModel model = SimpleMenuTemplates.get(menuRes, configuration);
+        if (model == null) {
+            // Also covers a preload that completed since the lookup above.
+            SimpleMenuPreloader.await(menuRes);
+            model = SimpleMenuTemplates.get(menuRes, configuration);
+        }
+        if (model == null) {
+            model = loadModel(mContext, resources, configuration, menuRes);
+        }
+        return model;
+    }
+
+    /**
+     * Starts parsing menu resources on background threads, so that the first
+     * activity inflating them does not parse on the UI thread. An inflation
+     * that needs a menu still being parsed waits for just that menu. Can be
+     * called e.g. from <code>Application.onCreate()</code>.
+     * @param context Application context
+     * @param menuRes Resource IDs of the menus to parse
+     */
+    public static void preload(Context context, int... menuRes) {
+        SimpleMenuPreloader.preload(context, menuRes);
+    }
+
+    /**
+     * Reads a menu resource from the disk cache or its XML, and keeps it in
+     * {@link SimpleMenuTemplates}.
+     */
+    static SimpleMenuModel loadModel(Context context, Resources resources,
+            Configuration configuration, int menuRes) {
+        SimpleMenuModel model = SimpleMenuDiskCache.read(context, menuRes, configuration);
+        if (model == null) {
+            model = parse(resources, menuRes);
+            SimpleMenuDiskCache.writeAsync(context, menuRes, configuration, model);
+        }
+        SimpleMenuTemplates.put(menuRes, configuration, model);
+        return model;
+    }
+
+    private static SimpleMenuModel getCompiledModel(int menuRes) {
+        synchronized (sCompiledMenus) {
+            SimpleMenuModel model = sCompiledModels.get(menuRes);
+            if (model == null) {
+                final CompiledMenu menu = sCompiledMenus.get(menuRes);
+                if (menu != null) {
+                    model = menu.build();
+                    sCompiledModels.put(menuRes, model);
+                }
+            }
+            return model;
+        }
+    }
+
+    /**
+     * Reads the menu XML, bypassing the caches.
+     */
+    static SimpleMenuModel parse(Resources resources, int menuRes) {
+        XmlResourceParser parser = null;
+        try {
+            ActionBarMetrics.get().onMenuParsed(menuRes);
+            parser = resources.getXml(menuRes);
+            return parseMenu(resources, parser);
+        } catch (XmlPullParserException e) {
+            throw new InflateException("Error inflating menu XML", e);
+        } catch (IOException e) {
+            throw new InflateException("Error inflating menu XML", e);
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+
+    private static SimpleMenuModel parseMenu(Resources resources, XmlResourceParser parser)
+            throws XmlPullParserException, IOException {
+        final SimpleMenuModel.Builder builder = new SimpleMenuModel.Builder();
+        // Defaults of the enclosing <group>, if any.
+        int groupCategory = 0;
+        int groupOrder = 0;
+        boolean groupVisible = true;
+        boolean groupEnabled = true;
+        int menuDepth = 0;
+
+        int eventType = parser.getEventType();
+        boolean eof = false;
+        while (!eof) {
+            switch (eventType) {
+            case XmlPullParser.START_TAG:
+                final String tagName = parser.getName();
+                if (tagName.equals(XML_MENU)) {
+                    if (++menuDepth > 1) {
+                        throw new UnsupportedOperationException(
+                                "Sub-menus are not supported for SimpleMenu");
+                    }
+                } else if (tagName.equals(XML_GROUP)) {
+                    final TypedArray a = resources.obtainAttributes(parser, GROUP_ATTRS);
+                    groupCategory = a.getInt(GROUP_CATEGORY, 0);
+                    groupOrder = a.getInt(GROUP_ORDER, 0);
+                    groupVisible = a.getBoolean(GROUP_VISIBLE, true);
+                    groupEnabled = a.getBoolean(GROUP_ENABLED, true);
+                    a.recycle();
+                } else if (tagName.equals(XML_ITEM)) {
+                    final TypedArray a = resources.obtainAttributes(parser, ITEM_ATTRS);
+                    addItem(a, builder, groupCategory, groupOrder, groupVisible,
+                            groupEnabled);
+                    a.recycle();
+                }
+                break;
+
+            case XmlPullParser.END_TAG:
+                if (parser.getName().equals(XML_GROUP)) {
+                    groupCategory = 0;
+                    groupOrder = 0;
+                    groupVisible = true;
+                    groupEnabled = true;
+                }
+                break;
+
+            case XmlPullParser.END_DOCUMENT:
+                eof = true;
+                break;
+            }
+
+            eventType = parser.next();
+        }
+        return builder.build();
+    }
+
+    private static void addItem(TypedArray a, SimpleMenuModel.Builder builder,
+            int groupCategory, int groupOrder, boolean groupVisible, boolean groupEnabled) {
+        final int itemId = a.getResourceId(ITEM_ID, Menu.NONE);
+        final int category = a.getInt(ITEM_CATEGORY, groupCategory);
+        final int orderInCategory = a.getInt(ITEM_ORDER, groupOrder);
+        final int order = (category & Menu.CATEGORY_MASK) | (orderInCategory & Menu.USER_MASK);
+
+        // String resources stay referenced by id, resolved when the menu is built.
+        final SimpleMenuModel.ItemBuilder item;
+        final int titleRes = a.getResourceId(ITEM_TITLE, 0);
+        if (titleRes != 0) {
+            item = builder.add(itemId, order, titleRes);
+        } else {
+            item = builder.add(itemId, order, a.getText(ITEM_TITLE));
+        }
+        final int titleCondensedRes = a.getResourceId(ITEM_TITLE_CONDENSED, 0);
+        if (titleCondensedRes != 0) {
+            item.setTitleCondensed(titleCondensedRes);
+        } else {
+            item.setTitleCondensed(a.getText(ITEM_TITLE_CONDENSED));
+        }
+
+        item.setIcon(a.getResourceId(ITEM_ICON, SimpleMenuItem.NO_ICON));
+        item.setVisible(a.getBoolean(ITEM_VISIBLE, groupVisible));
+        item.setEnabled(a.getBoolean(ITEM_ENABLED, groupEnabled));
+        final int showAsAction = a.getInt(ITEM_SHOW_AS_ACTION, MenuItemCompat.SHOW_AS_ACTION_NEVER);
+        item.setShowAsAction(showAsAction);
+        // Only action buttons show an action view.
+        if ((showAsAction & (MenuItemCompat.SHOW_AS_ACTION_ALWAYS
+                | MenuItemCompat.SHOW_AS_ACTION_IF_ROOM)) != 0) {
+            item.setActionView(a.getResourceId(ITEM_ACTION_LAYOUT, 0));
+        }
+    }
+
+    private static int[] sorted(int... attrs) {
+        Arrays.sort(attrs);
+        return attrs;
+    }
+
+    private static int index(int[] attrs, int attr) {
+        return Arrays.binarySearch(attrs, attr);
+    }
+}
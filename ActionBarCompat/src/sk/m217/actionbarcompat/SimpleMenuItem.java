@@ -19,14 +19,15 @@
 
 package sk.m217.actionbarcompat;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 import android.content.ActivityNotFoundException;
-import android.content.Context;
 import android.content.Intent;
 import android.graphics.drawable.Drawable;
 import android.util.Log;
 import android.view.ActionProvider;
 import android.view.ContextMenu;
-import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.SubMenu;
 import android.view.View;
@@ -36,6 +37,17 @@ import android.view.View;
  * useful for our actionbar-compat purposes. See
  * <code>com.android.internal.view.menu.MenuItemImpl</code> in AOSP for a more complete
  * implementation.
+ * <p>
+ * The setters and {@link #invoke()} are called often while a screen is live
+ * and do not allocate on the main thread; optional state goes to the lazily
+ * created extras.
+ * <p>
+ * The setters may be called from any thread, except those of the action
+ * view, which must be called on the main thread. Flags are updated
+ * atomically and the extras are published safely, so concurrent setters do
+ * not lose each other's changes. {@link #setTitle(int)} resolves the title
+ * on the calling thread, through resources that are safe to use from any
+ * thread by default, see {@link SimpleMenuResources.ContextResources}.
  */
 public class SimpleMenuItem implements MenuItemICS {
 
@@ -46,30 +58,57 @@ public class SimpleMenuItem implements MenuItemICS {
 
     private SimpleMenu mMenu;
 
-    private final int mId;
-    private final int mOrder;
+    // Not final, items are reused by their menu, see reset().
+    private int mId;
+    private int mOrder;
+    private int mOrdering;
     private CharSequence mTitle;
-    private CharSequence mTitleCondensed;
-    private Intent mIntent;
     private Drawable mIconDrawable;
     private int mIconResId = NO_ICON;
-    private boolean mEnabled = true;
 
     private int mShowAsAction = SHOW_AS_ACTION_NEVER;
-    private View mActionView;
-    private View mView;
-    private OnActionExpandListener mOnActionExpandListener;
-    private boolean mIsActionViewExpanded = false;
-    private boolean mIsVisible = true;
-    private OnMenuItemClickListener mClickListener;
+    private volatile int mFlags = ENABLED | VISIBLE;
+    private volatile Extras mExtras;
+    private int mPendingChanges;
+    private volatile int mRemotePendingChanges;
+
+    private static final AtomicIntegerFieldUpdater<SimpleMenuItem> sFlagsUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(SimpleMenuItem.class, "mFlags");
+    private static final AtomicReferenceFieldUpdater<SimpleMenuItem, Extras> sExtrasUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(SimpleMenuItem.class, Extras.class, "mExtras");
+    private static final AtomicIntegerFieldUpdater<SimpleMenuItem> sRemotePendingChangesUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(SimpleMenuItem.class, "mRemotePendingChanges");
+
+    private static final int ENABLED = 0x00000001;
+    private static final int VISIBLE = 0x00000002;
+    private static final int ACTION_VIEW_EXPANDED = 0x00000004;
+
+    /**
+     * Properties that most items leave unset. They are allocated on first use,
+     * so that menus with many plain items do not pay for them on every item.
+     * The fields are volatile, as they may be set from any thread.
+     */
+    private static final class Extras {
+        volatile CharSequence mTitleCondensed;
+        volatile Intent mIntent;
+        volatile View mActionView;
+        volatile View mView;
+        volatile OnActionExpandListener mOnActionExpandListener;
+        volatile OnMenuItemClickListener mClickListener;
+    }
 
     
     static final int NO_ICON = 0;
 
     public SimpleMenuItem(SimpleMenu menu, int id, int order, CharSequence title) {
+        this(menu, id, order, SimpleMenu.getOrdering(order), title);
+    }
+
+    SimpleMenuItem(SimpleMenu menu, int id, int order, int ordering, CharSequence title) {
         mMenu = menu;
         mId = id;
         mOrder = order;
+        mOrdering = ordering;
         mTitle = title;
     }
 
@@ -81,14 +120,40 @@ public class SimpleMenuItem implements MenuItemICS {
         return mOrder;
     }
 
+    /**
+     * @return The ordering of this item across all menu categories.
+     */
+    int getOrdering() {
+        return mOrdering;
+    }
+
+    /**
+     * Returns this item to the state of a newly created one, so that its menu
+     * can reuse it for another item. Nothing set on the previous item, such as
+     * listeners, the action view, the intent or the icon, is kept.
+     */
+    void reset(int id, int order, int ordering, CharSequence title) {
+        mId = id;
+        mOrder = order;
+        mOrdering = ordering;
+        mTitle = title;
+        mIconDrawable = null;
+        mIconResId = NO_ICON;
+        mShowAsAction = SHOW_AS_ACTION_NEVER;
+        mFlags = ENABLED | VISIBLE;
+        mExtras = null;
+        mPendingChanges = 0;
+    }
+
     public MenuItem setTitle(CharSequence title) {
+        mMenu.trace(SimpleMenuTrace.OP_SET_TITLE, mId, 0);
         mTitle = title;
         mMenu.onItemChanged(this, SimpleMenu.ITEM_CHANGED_TITLE);
         return this;
     }
 
     public MenuItem setTitle(int titleRes) {
-        return setTitle(mMenu.getContext().getString(titleRes));
+        return setTitle(mMenu.getMenuResources().getText(titleRes));
     }
 
     public CharSequence getTitle() {
@@ -96,15 +161,20 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public MenuItem setTitleCondensed(CharSequence title) {
-        mTitleCondensed = title;
+        mMenu.onItemTouched();
+        if (title != null || mExtras != null) {
+            extras().mTitleCondensed = title;
+        }
         return this;
     }
 
     public CharSequence getTitleCondensed() {
-        return mTitleCondensed != null ? mTitleCondensed : mTitle;
+        final CharSequence titleCondensed = mExtras != null ? mExtras.mTitleCondensed : null;
+        return titleCondensed != null ? titleCondensed : mTitle;
     }
 
     public MenuItem setIcon(Drawable icon) {
+        mMenu.trace(SimpleMenuTrace.OP_SET_ICON, mId, NO_ICON);
         mIconResId = NO_ICON;
         mIconDrawable = icon;
         mMenu.onItemChanged(this, SimpleMenu.ITEM_CHANGED_ICON);
@@ -112,6 +182,7 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public MenuItem setIcon(int iconResId) {
+        mMenu.trace(SimpleMenuTrace.OP_SET_ICON, mId, iconResId);
         mIconDrawable = null;
         mIconResId = iconResId;
         mMenu.onItemChanged(this, SimpleMenu.ITEM_CHANGED_ICON);
@@ -124,18 +195,21 @@ public class SimpleMenuItem implements MenuItemICS {
         }
 
         if (mIconResId != NO_ICON) {
-            return mMenu.getResources().getDrawable(mIconResId);
+            ActionBarMetrics.get().onIconLoaded();
+            return mMenu.getMenuResources().getDrawable(mIconResId);
         }
         return null;
     }
 
     public MenuItem setEnabled(boolean enabled) {
-        mEnabled = enabled;
+        mMenu.trace(SimpleMenuTrace.OP_SET_ENABLED, mId, enabled ? 1 : 0);
+        mMenu.onItemTouched();
+        setFlag(ENABLED, enabled);
         return this;
     }
 
     public boolean isEnabled() {
-        return mEnabled;
+        return (mFlags & ENABLED) != 0;
     }
 
     // No-op operations. We use no-ops to allow inflation from menu XML.
@@ -146,7 +220,7 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public View getActionView() {
-    	return mActionView;
+    	return mExtras != null ? mExtras.mActionView : null;
     }
 
     public MenuItem setActionProvider(ActionProvider actionProvider) {
@@ -160,12 +234,12 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public boolean expandActionView() {
-    	if ((mShowAsAction & SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW) == 0 || mActionView == null) {
+    	if ((mShowAsAction & SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW) == 0 || getActionView() == null) {
     		return false;
     	}
 
-        if (mOnActionExpandListener == null ||
-                mOnActionExpandListener.onMenuItemActionExpand(this)) {
+        final OnActionExpandListener listener = getOnActionExpandListener();
+        if (listener == null || listener.onMenuItemActionExpand(this)) {
         	return mMenu.expandItemActionView(this);
         }
         return false;
@@ -175,20 +249,20 @@ public class SimpleMenuItem implements MenuItemICS {
         if ((mShowAsAction & SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW) == 0) {
             return false;
         }
-        if (mActionView == null) {
+        if (getActionView() == null) {
             // We're already collapsed if we have no action view.
             return true;
         }
 
-        if (mOnActionExpandListener == null ||
-                mOnActionExpandListener.onMenuItemActionCollapse(this)) {
+        final OnActionExpandListener listener = getOnActionExpandListener();
+        if (listener == null || listener.onMenuItemActionCollapse(this)) {
         	return mMenu.collapseItemActionView(this);
         }
         return false;
     }
 
     public boolean isActionViewExpanded() {
-    	return mIsActionViewExpanded;
+    	return (mFlags & ACTION_VIEW_EXPANDED) != 0;
     }
 
     @Override
@@ -198,17 +272,27 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public MenuItem setOnActionExpandListener(OnActionExpandListener onActionExpandListener) {
-    	mOnActionExpandListener = onActionExpandListener;
+    	mMenu.onItemTouched();
+    	if (onActionExpandListener != null || mExtras != null) {
+    		extras().mOnActionExpandListener = onActionExpandListener;
+    	}
     	return this;
     }
 
+    private OnActionExpandListener getOnActionExpandListener() {
+    	return mExtras != null ? mExtras.mOnActionExpandListener : null;
+    }
+
     public MenuItem setIntent(Intent intent) {
-    	mIntent = intent;
+    	mMenu.onItemTouched();
+    	if (intent != null || mExtras != null) {
+    		extras().mIntent = intent;
+    	}
         return this;
     }
 
     public Intent getIntent() {
-        return mIntent;
+        return mExtras != null ? mExtras.mIntent : null;
     }
 
     public MenuItem setShortcut(char c, char c1) {
@@ -257,17 +341,20 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public MenuItem setVisible(boolean visible) {
-    	mIsVisible = visible;
+    	mMenu.trace(SimpleMenuTrace.OP_SET_VISIBLE, mId, visible ? 1 : 0);
+    	setFlag(VISIBLE, visible);
     	mMenu.onItemChanged(this, SimpleMenu.ITEM_CHANGED_VISIBILITY);
         return this;
     }
 
     public boolean isVisible() {
-    	return mIsVisible;
+    	return (mFlags & VISIBLE) != 0;
     }
 
     public boolean invoke() {
-    	if (mClickListener != null && mClickListener.onMenuItemClick(this)) {
+    	final Extras extras = mExtras;
+    	if (extras != null && extras.mClickListener != null
+    			&& extras.mClickListener.onMenuItemClick(this)) {
     		return true;
     	}
 
@@ -275,9 +362,9 @@ public class SimpleMenuItem implements MenuItemICS {
     		return true;
     	}
 
-    	if (mIntent != null) {
+    	if (extras != null && extras.mIntent != null) {
     		try {
-    			mMenu.getContext().startActivity(mIntent);
+    			mMenu.getContext().startActivity(extras.mIntent);
     			return true;
     		} catch (ActivityNotFoundException e) {
     			Log.e(TAG, "Can't find activity to handle intent; ignoring", e);
@@ -298,7 +385,10 @@ public class SimpleMenuItem implements MenuItemICS {
     }
 
     public MenuItem setOnMenuItemClickListener(OnMenuItemClickListener onMenuItemClickListener) {
-    	mClickListener = onMenuItemClickListener;
+    	mMenu.onItemTouched();
+    	if (onMenuItemClickListener != null || mExtras != null) {
+    		extras().mClickListener = onMenuItemClickListener;
+    	}
         return this;
     }
 
@@ -320,6 +410,7 @@ public class SimpleMenuItem implements MenuItemICS {
     			throw new IllegalArgumentException("SHOW_AS_ACTION_ALWAYS, SHOW_AS_ACTION_IF_ROOM,"
     					+ " and SHOW_AS_ACTION_NEVER are mutually exclusive.");
     	}
+    	mMenu.trace(SimpleMenuTrace.OP_SET_SHOW_AS_ACTION, mId, actionEnum);
     	mShowAsAction = actionEnum;
     	mMenu.onItemChanged(this, SimpleMenu.ITEM_CHANGED_ACTION);
     }
@@ -329,8 +420,14 @@ public class SimpleMenuItem implements MenuItemICS {
         return null;
     }
 
+    /**
+     * Must be called on the main thread.
+     */
     public MenuItem setActionView(View view) {
-    	mActionView = view;
+    	mMenu.checkMainThread("setActionView");
+    	if (view != null || mExtras != null) {
+    		extras().mActionView = view;
+    	}
     	if (view != null && view.getId() == View.NO_ID && mId > 0) {
     		view.setId(mId);
     	}
@@ -338,26 +435,118 @@ public class SimpleMenuItem implements MenuItemICS {
     	return this;
     }
 
+    /**
+     * Must be called on the main thread.
+     */
     public MenuItem setActionView(int resId) {
-    	final Context context = mMenu.getContext();
-    	final LayoutInflater inflater = LayoutInflater.from(context);
-       	setActionView(inflater.inflate(resId, null));
+    	mMenu.checkMainThread("setActionView");
+    	setActionView(mMenu.getMenuResources().inflateActionView(resId));
     	return this;
     }
 
+    /**
+     * @return The showAsAction flags, see {@link MenuItemCompat#setShowAsAction(MenuItem, int)}.
+     */
+    int getShowAsAction() {
+    	return mShowAsAction;
+    }
+
+    /**
+     * @return The icon resource id, or {@link #NO_ICON} if the icon is not set
+     *         or was set as a drawable.
+     */
+    int getIconResId() {
+    	return mIconResId;
+    }
+
+    boolean hasIconDrawable() {
+    	return mIconDrawable != null;
+    }
+
+    /**
+     * @return True if this item asks to be shown as an action button,
+     *         always or if there is room for it.
+     */
+    boolean requestsActionButton() {
+    	return (mShowAsAction & (SHOW_AS_ACTION_ALWAYS | SHOW_AS_ACTION_IF_ROOM)) != 0;
+    }
+
     boolean hasCollapsibleActionView() {
-    	return (mShowAsAction & SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW) != 0 && mActionView != null;
+    	return (mShowAsAction & SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW) != 0 && getActionView() != null;
     }
 
     void setActionViewExpanded(boolean isExpanded) {
-    	mIsActionViewExpanded = isExpanded;
+    	setFlag(ACTION_VIEW_EXPANDED, isExpanded);
+    }
+
+    /**
+     * Sets or clears a flag atomically, so that setting one flag on another
+     * thread does not undo a concurrent change of another flag.
+     */
+    private void setFlag(int flag, boolean set) {
+    	int flags;
+    	do {
+    		flags = mFlags;
+    	} while (!sFlagsUpdater.compareAndSet(this, flags, set ? (flags | flag) : (flags & ~flag)));
     }
 
     View getView() {
-    	return mView;
+    	return mExtras != null ? mExtras.mView : null;
     }
 
     void setView(View view) {
-    	mView = view;
+    	if (view != null || mExtras != null) {
+    		extras().mView = view;
+    	}
+    }
+
+    /**
+     * @return The extras, created on first use. When two threads create them
+     *         at once, both get the same instance.
+     */
+    private Extras extras() {
+    	final Extras extras = mExtras;
+    	if (extras != null) {
+    		return extras;
+    	}
+    	sExtrasUpdater.compareAndSet(this, null, new Extras());
+    	return mExtras;
+    }
+
+    /**
+     * @return The ITEM_CHANGED_* flags recorded for this item during a
+     *         {@link SimpleMenu#beginUpdate()} transaction.
+     */
+    int getPendingChanges() {
+    	return mPendingChanges;
+    }
+
+    void setPendingChanges(int changes) {
+    	mPendingChanges = changes;
+    }
+
+    /**
+     * Records changes made to this item on a thread other than the main one.
+     * @return The changes recorded before, 0 if the item still has to be queued
+     *         for delivery on the main thread.
+     */
+    int addRemotePendingChanges(int changes) {
+    	int pending;
+    	do {
+    		pending = mRemotePendingChanges;
+    	} while (!sRemotePendingChangesUpdater.compareAndSet(this, pending, pending | changes));
+    	return pending;
+    }
+
+    /**
+     * @return The changes recorded by {@link #addRemotePendingChanges(int)}
+     *         since the last call, which are cleared.
+     */
+    int takeRemotePendingChanges() {
+    	return sRemotePendingChangesUpdater.getAndSet(this, 0);
+    }
+
+    boolean hasRemotePendingChanges() {
+    	return mRemotePendingChanges != 0;
     }
 }
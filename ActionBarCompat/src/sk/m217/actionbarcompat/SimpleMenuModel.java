@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import android.content.Intent;
+
+/**
+ * An immutable description of the items of a {@link SimpleMenu}. It can be
+ * built on any thread with a {@link Builder} and handed to the menu with
+ * {@link SimpleMenu#publishModel(SimpleMenuModel)}, which replaces all items
+ * of the menu at once on the main thread.
+ */
+public final class SimpleMenuModel {
+
+	final Item[] mItems;
+
+	private SimpleMenuModel(Item[] items) {
+		mItems = items;
+	}
+
+	public int size() {
+		return mItems.length;
+	}
+
+	/**
+	 * Adds the ids of the items that request an action button to the set.
+	 */
+	void collectActionItemIds(Set<Integer> ids) {
+		for (int i = 0; i < mItems.length; i++) {
+			if ((mItems[i].mShowAsAction & (MenuItemCompat.SHOW_AS_ACTION_ALWAYS
+					| MenuItemCompat.SHOW_AS_ACTION_IF_ROOM)) != 0) {
+				ids.add(mItems[i].mId);
+			}
+		}
+	}
+
+	static final class Item {
+		final int mId;
+		final int mOrder;
+		final CharSequence mTitle;
+		final int mTitleRes;
+		final CharSequence mTitleCondensed;
+		final int mTitleCondensedRes;
+		final int mIconRes;
+		final int mShowAsAction;
+		final int mActionLayout;
+		final boolean mVisible;
+		final boolean mEnabled;
+		final Intent mIntent;
+
+		Item(ItemBuilder b) {
+			mId = b.mId;
+			mOrder = b.mOrder;
+			mTitle = b.mTitle;
+			mTitleRes = b.mTitleRes;
+			mTitleCondensed = b.mTitleCondensed;
+			mTitleCondensedRes = b.mTitleCondensedRes;
+			mIconRes = b.mIconRes;
+			mShowAsAction = b.mShowAsAction;
+			mActionLayout = b.mActionLayout;
+			mVisible = b.mVisible;
+			mEnabled = b.mEnabled;
+			mIntent = b.mIntent;
+		}
+	}
+
+	/**
+	 * Collects the items of a {@link SimpleMenuModel}. A builder must only be
+	 * used by one thread at a time, the model it builds may be used by any.
+	 */
+	public static final class Builder {
+		private final ArrayList<ItemBuilder> mItems = new ArrayList<ItemBuilder>();
+
+		/**
+		 * Adds an item, see {@link SimpleMenu#add(int, int, int, CharSequence)}.
+		 * @return The item, to set its remaining properties
+		 */
+		public ItemBuilder add(int itemId, int order, CharSequence title) {
+			final ItemBuilder item = new ItemBuilder(itemId, order);
+			item.mTitle = title;
+			mItems.add(item);
+			return item;
+		}
+
+		/**
+		 * Adds an item with a title resource, which is resolved when the
+		 * model is applied to a menu.
+		 * @return The item, to set its remaining properties
+		 */
+		public ItemBuilder add(int itemId, int order, int titleRes) {
+			final ItemBuilder item = new ItemBuilder(itemId, order);
+			item.mTitleRes = titleRes;
+			mItems.add(item);
+			return item;
+		}
+
+		public SimpleMenuModel build() {
+			final int size = mItems.size();
+			final Item[] items = new Item[size];
+			for (int i = 0; i < size; i++) {
+				items[i] = new Item(mItems.get(i));
+			}
+			return new SimpleMenuModel(items);
+		}
+	}
+
+	/**
+	 * Properties of a single item added to a {@link Builder}. Resources are
+	 * only referenced by id here, and loaded on the main thread.
+	 */
+	public static final class ItemBuilder {
+		private final int mId;
+		private final int mOrder;
+		private CharSequence mTitle;
+		private int mTitleRes;
+		private CharSequence mTitleCondensed;
+		private int mTitleCondensedRes;
+		private int mIconRes = SimpleMenuItem.NO_ICON;
+		private int mShowAsAction = MenuItemCompat.SHOW_AS_ACTION_NEVER;
+		private int mActionLayout;
+		private boolean mVisible = true;
+		private boolean mEnabled = true;
+		private Intent mIntent;
+
+		private ItemBuilder(int id, int order) {
+			mId = id;
+			mOrder = order;
+		}
+
+		public ItemBuilder setTitleCondensed(CharSequence title) {
+			mTitleCondensed = title;
+			mTitleCondensedRes = 0;
+			return this;
+		}
+
+		/**
+		 * Sets the condensed title by resource, which is resolved when the
+		 * model is applied to a menu.
+		 */
+		public ItemBuilder setTitleCondensed(int titleRes) {
+			mTitleCondensed = null;
+			mTitleCondensedRes = titleRes;
+			return this;
+		}
+
+		public ItemBuilder setIcon(int iconRes) {
+			mIconRes = iconRes;
+			return this;
+		}
+
+		public ItemBuilder setShowAsAction(int actionEnum) {
+			mShowAsAction = actionEnum;
+			return this;
+		}
+
+		public ItemBuilder setActionView(int layoutRes) {
+			mActionLayout = layoutRes;
+			return this;
+		}
+
+		public ItemBuilder setVisible(boolean visible) {
+			mVisible = visible;
+			return this;
+		}
+
+		public ItemBuilder setEnabled(boolean enabled) {
+			mEnabled = enabled;
+			return this;
+		}
+
+		public ItemBuilder setIntent(Intent intent) {
+			mIntent = intent;
+			return this;
+		}
+	}
+}
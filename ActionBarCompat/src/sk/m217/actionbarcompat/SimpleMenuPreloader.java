@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Process;
+import android.util.SparseArray;
+
+/**
+ * Parses menu resources on a small worker pool ahead of their first inflation,
+ * see {@link SimpleMenuInflater#preload(Context, int...)}. The parsed menus
+ * end up in {@link SimpleMenuTemplates}, like menus parsed on the UI thread.
+ * The workers run at background priority, so they do not compete with the
+ * UI thread for the CPU.
+ */
+final class SimpleMenuPreloader {
+
+	/** Menus queued or being parsed, by resource id. */
+	private static final SparseArray<FutureTask<SimpleMenuModel>> sPending =
+			new SparseArray<FutureTask<SimpleMenuModel>>();
+
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					r.run();
+				}
+			}, "SimpleMenuPreloader");
+		}
+	};
+
+	private SimpleMenuPreloader() {
+	}
+
+	static void preload(Context context, int[] menuRes) {
+		if (menuRes.length == 0) {
+			return;
+		}
+		final Context appContext = context.getApplicationContext();
+		final Resources resources = appContext.getResources();
+		final Configuration configuration = new Configuration(resources.getConfiguration());
+
+		final int threads = Math.min(menuRes.length, Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				sThreadFactory);
+		synchronized (sPending) {
+			for (int i = 0; i < menuRes.length; i++) {
+				final int res = menuRes[i];
+				if (sPending.get(res) != null
+						|| SimpleMenuTemplates.get(res, configuration) != null) {
+					continue;
+				}
+				final FutureTask<SimpleMenuModel> task = new FutureTask<SimpleMenuModel>(
+						new Callable<SimpleMenuModel>() {
+					@Override
+					public SimpleMenuModel call() {
+						try {
+							return SimpleMenuInflater.loadModel(appContext, resources,
+									configuration, res);
+						} finally {
+							synchronized (sPending) {
+								sPending.remove(res);
+							}
+						}
+					}
+				});
+				sPending.put(res, task);
+				executor.execute(task);
+			}
+		}
+		// The threads exit once the queued menus are parsed.
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for a menu queued by {@link #preload(Context, int[])} to be parsed,
+	 * returns at once if it is not queued. A menu no worker has started on yet
+	 * is parsed on the calling thread instead of waiting behind the others.
+	 * If the parse failed, the caller parses the menu again and so reports the
+	 * error where it belongs.
+	 */
+	static void await(int menuRes) {
+		final FutureTask<SimpleMenuModel> task;
+		synchronized (sPending) {
+			task = sPending.get(menuRes);
+		}
+		if (task == null) {
+			return;
+		}
+		// Does nothing if a worker has started the task, a task runs at most once.
+		task.run();
+		try {
+			task.get();
+		} catch (ExecutionException e) {
+			// Ignore
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -28,7 +28,7 @@ public interface SimpleMenuPresenter {
 	/**
 	 * Initialize this presenter for the given context and menu.
 	 * This method is called by SimpleMenu when a presenter is
-	 * added. See {@link SimpleMenu#addMenuPresenter(MenuPresenter)}
+	 * added. See {@link SimpleMenu#addMenuPresenter(SimpleMenuPresenter)}
 	 *
 	 * @param context Context for this presenter; used for view creation and resource management
 	 * @param menu Menu to host
@@ -37,11 +37,17 @@ public interface SimpleMenuPresenter {
 
     /**
      * Update the menu UI in response to a change. Called by
-     * SimpleMenu when a menu item has been changed.
+     * SimpleMenu when a menu item has been changed. Changes made within
+     * {@link SimpleMenu#beginUpdate()} and {@link SimpleMenu#endUpdate()}
+     * are delivered once per item, with their flags combined. Only the flags
+     * the presenter registered for are passed, see
+     * {@link SimpleMenu#addMenuPresenter(SimpleMenuPresenter, int)}.
      *
      * @param menu Menu containing the updated item
-     * @param item Updated item
-     * @param int Indicates what has been changed
+     * @param item Updated item, or null with {@link SimpleMenu#ITEM_CHANGED_NEW}
+     *        when all items of the menu were replaced by a published model, see
+     *        {@link SimpleMenu#publishModel(SimpleMenuModel)}
+     * @param change Bitmask of SimpleMenu.ITEM_CHANGED_* flags indicating what has been changed
      */
     public void updateMenuView(SimpleMenu menu, SimpleMenuItem item, int change);
 
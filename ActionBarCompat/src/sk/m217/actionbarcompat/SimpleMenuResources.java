@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.view.LayoutInflater;
+import android.view.View;
+
+/**
+ * Resolves the resources referenced by a {@link SimpleMenu} and its items:
+ * titles, icons and action view layouts. The menu does not use
+ * {@link android.content.res.Resources} directly, so it can be driven with
+ * a stand-in implementation outside of an application.
+ */
+public interface SimpleMenuResources {
+
+	/**
+	 * Returns a string resource with its styling, like
+	 * {@link android.content.res.Resources#getText(int)}.
+	 */
+	public CharSequence getText(int resId);
+
+	public Drawable getDrawable(int resId);
+
+	/**
+	 * Inflates an action view layout.
+	 * @param layoutResId Layout resource id
+	 * @return The root of the inflated layout, not attached to a parent
+	 */
+	public View inflateActionView(int layoutResId);
+
+	/**
+	 * {@link SimpleMenuResources} backed by the resources of a {@link Context}.
+	 */
+	public static class ContextResources implements SimpleMenuResources {
+		private final Context mContext;
+
+		public ContextResources(Context context) {
+			mContext = context;
+		}
+
+		@Override
+		public CharSequence getText(int resId) {
+			return mContext.getResources().getText(resId);
+		}
+
+		@Override
+		public Drawable getDrawable(int resId) {
+			return mContext.getResources().getDrawable(resId);
+		}
+
+		@Override
+		public View inflateActionView(int layoutResId) {
+			return LayoutInflater.from(mContext).inflate(layoutResId, null);
+		}
+	}
+}
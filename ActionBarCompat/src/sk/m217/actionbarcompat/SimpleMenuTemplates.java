@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.res.Configuration;
+
+/**
+ * Process-wide cache of the items of inflated menu resources. Activities that
+ * inflate the same menu share one immutable {@link SimpleMenuModel}, and only
+ * their own {@link SimpleMenuItem}s hold per-activity state such as
+ * visibility, enabled state, listeners and action views. Only the most
+ * recently used menus are kept.
+ */
+final class SimpleMenuTemplates {
+
+	private static final int MAX_TEMPLATES = 32;
+
+	private static final Map<Integer, Template> sTemplates =
+			new LinkedHashMap<Integer, Template>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Template> eldest) {
+			return size() > MAX_TEMPLATES;
+		}
+	};
+
+	private static final class Template {
+		final Configuration mConfiguration;
+		final SimpleMenuModel mModel;
+
+		Template(Configuration configuration, SimpleMenuModel model) {
+			mConfiguration = configuration;
+			mModel = model;
+		}
+	}
+
+	private SimpleMenuTemplates() {
+	}
+
+	/**
+	 * @param menuRes Menu resource id
+	 * @param configuration Configuration the menu is inflated in; a template
+	 *        recorded in another one may come from other resources or locale
+	 * @return The template for the menu, or null if there is none yet.
+	 */
+	static SimpleMenuModel get(int menuRes, Configuration configuration) {
+		synchronized (sTemplates) {
+			final Template template = sTemplates.get(menuRes);
+			if (template != null && template.mConfiguration.equals(configuration)) {
+				return template.mModel;
+			}
+			return null;
+		}
+	}
+
+	static void put(int menuRes, Configuration configuration, SimpleMenuModel model) {
+		synchronized (sTemplates) {
+			sTemplates.put(menuRes, new Template(new Configuration(configuration), model));
+		}
+	}
+}
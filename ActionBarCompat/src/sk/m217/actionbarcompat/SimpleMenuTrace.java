@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+/**
+ * Records the mutations and lookups performed on a {@link SimpleMenu} and its
+ * items during a real session, and replays them against another menu to
+ * measure the menu model with a realistic workload.
+ * <p>
+ * A trace is a sequence of fixed-size records of an operation, an item id
+ * and an argument. Titles are not recorded, a replay sets placeholder titles.
+ */
+public final class SimpleMenuTrace {
+	private static final String TAG = "SimpleMenuTrace";
+
+	private static final int MAGIC = 0x41424d54;
+	private static final int FORMAT_VERSION = 1;
+
+	static final int OP_ADD = 1;
+	static final int OP_REMOVE = 2;
+	static final int OP_CLEAR = 3;
+	static final int OP_FIND = 4;
+	static final int OP_SET_TITLE = 5;
+	static final int OP_SET_ICON = 6;
+	static final int OP_SET_VISIBLE = 7;
+	static final int OP_SET_ENABLED = 8;
+	static final int OP_SET_SHOW_AS_ACTION = 9;
+	static final int OP_EXPAND = 10;
+	static final int OP_COLLAPSE = 11;
+
+	private static final CharSequence[] REPLAY_TITLES = { "Title", "Other title" };
+
+	private SimpleMenuTrace() {
+	}
+
+	/**
+	 * Writes the operations of the menus it is set on, see
+	 * {@link SimpleMenu#setTraceRecorder(Recorder)}. Recording stops at the
+	 * first write error.
+	 */
+	public static final class Recorder {
+		private final DataOutputStream mOut;
+		private boolean mFailed;
+
+		/**
+		 * @param out Stream the trace is written to, closed by {@link #close()}
+		 */
+		public Recorder(OutputStream out) throws IOException {
+			mOut = new DataOutputStream(new BufferedOutputStream(out));
+			mOut.writeInt(MAGIC);
+			mOut.writeInt(FORMAT_VERSION);
+		}
+
+		synchronized void record(int op, int itemId, int arg) {
+			if (mFailed) {
+				return;
+			}
+			try {
+				mOut.writeByte(op);
+				mOut.writeInt(itemId);
+				mOut.writeInt(arg);
+			} catch (IOException e) {
+				Log.w(TAG, "Cannot write menu trace, recording stopped", e);
+				mFailed = true;
+			}
+		}
+
+		public synchronized void close() throws IOException {
+			mFailed = true;
+			mOut.close();
+		}
+	}
+
+	/**
+	 * Outcome of a {@link SimpleMenuTrace#replay(InputStream, SimpleMenu)}.
+	 */
+	public static final class Result {
+		/** Number of replayed operations. */
+		public final int operations;
+		/** Time spent replaying them. */
+		public final long elapsedNanos;
+		/** Objects allocated while replaying them on the calling thread. */
+		public final int allocations;
+
+		Result(int operations, long elapsedNanos, int allocations) {
+			this.operations = operations;
+			this.elapsedNanos = elapsedNanos;
+			this.allocations = allocations;
+		}
+
+		/**
+		 * @return Replayed operations per second.
+		 */
+		public double getThroughput() {
+			return elapsedNanos > 0 ? operations * 1e9 / elapsedNanos : 0;
+		}
+
+		@Override
+		public String toString() {
+			return operations + " ops in " + elapsedNanos / 1000 + " us ("
+					+ Math.round(getThroughput()) + " ops/s), " + allocations + " allocations";
+		}
+	}
+
+	/**
+	 * Reads a whole trace and then replays it against the menu, so reading
+	 * does not count towards the measurement. Operations on items the menu
+	 * does not have are skipped. Operations on an item apply to the item last
+	 * added with its id, resolved before the replay, so the replay does not
+	 * look up items the session already held.
+	 * <p>
+	 * Must be called on the main thread. Item changes made on other threads
+	 * are delivered later on the main thread, outside of the measurement.
+	 * @param in Stream with a trace written by a {@link Recorder}
+	 * @param menu Menu to replay the trace on, usually an empty one
+	 * @return Number of operations, time and allocations of the replay
+	 * @throws IllegalStateException If not called on the main thread
+	 */
+	public static Result replay(InputStream in, SimpleMenu menu) throws IOException {
+		menu.checkMainThread("replay");
+		final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+			throw new IOException("Not a menu trace");
+		}
+		int size = 0;
+		byte[] ops = new byte[256];
+		int[] args = new int[ops.length * 2];
+		while (true) {
+			final byte op;
+			try {
+				op = data.readByte();
+			} catch (EOFException e) {
+				break;
+			}
+			if (size == ops.length) {
+				final byte[] newOps = new byte[size * 2];
+				final int[] newArgs = new int[size * 4];
+				System.arraycopy(ops, 0, newOps, 0, size);
+				System.arraycopy(args, 0, newArgs, 0, size * 2);
+				ops = newOps;
+				args = newArgs;
+			}
+			ops[size] = op;
+			args[size * 2] = data.readInt();
+			args[size * 2 + 1] = data.readInt();
+			size++;
+		}
+
+		final int[] slots = new int[size];
+		final SimpleMenuItem[] items = resolveItems(menu, ops, args, size, slots);
+
+		Debug.startAllocCounting();
+		Debug.resetThreadAllocCount();
+		final long start = System.nanoTime();
+		for (int i = 0; i < size; i++) {
+			replay(menu, ops[i], args[i * 2], args[i * 2 + 1], i, items, slots[i]);
+		}
+		final long elapsed = System.nanoTime() - start;
+		final int allocations = Debug.getThreadAllocCount();
+		Debug.stopAllocCounting();
+		return new Result(size, elapsed, allocations);
+	}
+
+	/**
+	 * Assigns the item every operation applies to a slot in the returned
+	 * array. Adds fill their slot during the replay, items already in the
+	 * menu are looked up here.
+	 * @param slots Receives the slot of each operation, or -1 for none
+	 */
+	private static SimpleMenuItem[] resolveItems(SimpleMenu menu, byte[] ops, int[] args,
+			int size, int[] slots) {
+		final SimpleMenuItem[] items = new SimpleMenuItem[size];
+		// Slot of the live item with each id, -1 once removed.
+		final SparseIntArray liveSlots = new SparseIntArray();
+		int slotCount = 0;
+		boolean cleared = false;
+		for (int i = 0; i < size; i++) {
+			final int itemId = args[i * 2];
+			slots[i] = -1;
+			switch (ops[i]) {
+			case OP_ADD:
+				slots[i] = slotCount++;
+				liveSlots.put(itemId, slots[i]);
+				break;
+			case OP_REMOVE:
+				liveSlots.put(itemId, -1);
+				break;
+			case OP_CLEAR:
+				liveSlots.clear();
+				cleared = true;
+				break;
+			case OP_FIND:
+				break;
+			default:
+				int slot = liveSlots.get(itemId, -2);
+				if (slot == -2) {
+					// Not added by the trace, the item may already be in the menu.
+					final SimpleMenuItem item = cleared
+							? null : (SimpleMenuItem) menu.findItem(itemId);
+					slot = -1;
+					if (item != null) {
+						slot = slotCount++;
+						items[slot] = item;
+					}
+					liveSlots.put(itemId, slot);
+				}
+				slots[i] = slot;
+				break;
+			}
+		}
+		return items;
+	}
+
+	private static void replay(SimpleMenu menu, int op, int itemId, int arg, int index,
+			SimpleMenuItem[] items, int slot) {
+		switch (op) {
+		case OP_ADD:
+			items[slot] = (SimpleMenuItem) menu.add(0, itemId, arg, REPLAY_TITLES[0]);
+			return;
+		case OP_REMOVE:
+			menu.removeItem(itemId);
+			return;
+		case OP_CLEAR:
+			menu.clear();
+			return;
+		case OP_FIND:
+			menu.findItem(itemId);
+			return;
+		}
+
+		if (slot < 0) {
+			return;
+		}
+		final SimpleMenuItem item = items[slot];
+		switch (op) {
+		case OP_SET_TITLE:
+			item.setTitle(REPLAY_TITLES[index & 1]);
+			break;
+		case OP_SET_ICON:
+			if (arg != SimpleMenuItem.NO_ICON) {
+				item.setIcon(arg);
+			} else {
+				item.setIcon((Drawable) null);
+			}
+			break;
+		case OP_SET_VISIBLE:
+			item.setVisible(arg != 0);
+			break;
+		case OP_SET_ENABLED:
+			item.setEnabled(arg != 0);
+			break;
+		case OP_SET_SHOW_AS_ACTION:
+			item.setShowAsAction(arg);
+			break;
+		case OP_EXPAND:
+			// Action views are not recorded, go to the presenters directly.
+			menu.expandItemActionView(item);
+			break;
+		case OP_COLLAPSE:
+			menu.collapseItemActionView(item);
+			break;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.UiThreadTest;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * Tests that the {@link ActionBarHelperBase} calls made while a screen is live
+ * allocate no more than the framework view calls they make.
+ */
+public class ActionBarHelperBaseAllocationTest
+		extends ActivityInstrumentationTestCase2<ActionBarBaseTestActivity> {
+	private static final CharSequence[] TITLES = { "Title", "Other title" };
+
+	private ActionBarHelperBase mHelper;
+	private ActionBarBaseTestActivity mActivity;
+
+	public ActionBarHelperBaseAllocationTest() {
+		super(ActionBarBaseTestActivity.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mActivity = getActivity();
+		mHelper = (ActionBarHelperBase) mActivity.getActionBarHelper();
+	}
+
+	@UiThreadTest
+	public void testSetTitle() {
+		final TextView titleView = findTitleView();
+		assertNotNull(titleView);
+		final int viewAllocations = Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				titleView.setText(TITLES[i & 1]);
+			}
+		});
+		final int helperAllocations = Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				mHelper.setTitle(TITLES[i & 1]);
+			}
+		});
+		assertTrue(helperAllocations + " allocations, TextView.setText() " + viewAllocations,
+				helperAllocations <= viewAllocations);
+	}
+
+	@UiThreadTest
+	public void testSetRefreshActionItemState() {
+		final View refreshButton = mActivity.findViewById(R.id.actionbar_compat_item_refresh);
+		final View refreshIndicator = mActivity.findViewById(
+				R.id.actionbar_compat_item_refresh_progress);
+		assertNotNull(refreshButton);
+		assertNotNull(refreshIndicator);
+		final int viewAllocations = Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				final boolean refreshing = (i & 1) == 0;
+				refreshButton.setVisibility(refreshing ? View.GONE : View.VISIBLE);
+				refreshIndicator.setVisibility(refreshing ? View.VISIBLE : View.GONE);
+			}
+		});
+		final int helperAllocations = Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				mHelper.setRefreshActionItemState((i & 1) == 0);
+			}
+		});
+		assertTrue(helperAllocations + " allocations, View.setVisibility() " + viewAllocations,
+				helperAllocations <= viewAllocations);
+	}
+
+	/**
+	 * @return The title, the only text view directly in the action bar.
+	 */
+	private TextView findTitleView() {
+		final ViewGroup actionBar = (ViewGroup) mActivity.findViewById(R.id.actionbar_compat);
+		for (int i = 0; i < actionBar.getChildCount(); i++) {
+			if (actionBar.getChildAt(i) instanceof TextView) {
+				return (TextView) actionBar.getChildAt(i);
+			}
+		}
+		return null;
+	}
+}
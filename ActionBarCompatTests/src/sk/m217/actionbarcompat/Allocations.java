@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.os.Debug;
+
+/**
+ * Counts the objects a call allocates on the calling thread, after warming
+ * it up so that one-time allocations such as lazily grown lists do not count.
+ */
+final class Allocations {
+	private static final int WARMUP_CALLS = 100;
+	private static final int CALLS = 1000;
+
+	/**
+	 * A counted call.
+	 */
+	interface Call {
+		/**
+		 * @param i Number of the call, e.g. to alternate between values
+		 */
+		void run(int i);
+	}
+
+	private Allocations() {
+	}
+
+	/**
+	 * @return The number of objects {@value #CALLS} calls allocated
+	 */
+	static int count(Call call) {
+		for (int i = 0; i < WARMUP_CALLS; i++) {
+			call.run(i);
+		}
+		Debug.startAllocCounting();
+		try {
+			Debug.resetThreadAllocCount();
+			for (int i = 0; i < CALLS; i++) {
+				call.run(i);
+			}
+			return Debug.getThreadAllocCount();
+		} finally {
+			Debug.stopAllocCounting();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.view.MenuItem;
+
+/**
+ * Benchmarks of the static {@link MenuItemCompat} and {@link ActionBarCompat}
+ * calls, which dispatch to the implementation for the device's API level,
+ * against calling the item or the activity's action bar helper directly.
+ * See {@link MenuBenchmarkCase}.
+ */
+public class CompatDispatchBenchmark extends MenuBenchmarkCase {
+
+	/** Sizes do not apply to the action bar, it runs once. */
+	private static final int[] ONCE = { 1 };
+	private static final CharSequence[] TITLES = { "Title", "Other title" };
+
+	private SimpleMenu mMenu;
+	private int mSize;
+	private ActionBarTestActivity mActivity;
+
+	private abstract class MenuOperation implements Operation {
+		@Override
+		public void setUp(int size) {
+			mMenu = newMenu();
+			mSize = size;
+			addItems(mMenu, size);
+		}
+	}
+
+	private abstract class ActivityOperation implements Operation {
+		@Override
+		public void setUp(int size) {
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mActivity = launchActivity(getInstrumentation().getTargetContext().getPackageName(),
+				ActionBarTestActivity.class, null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mActivity.finish();
+		super.tearDown();
+	}
+
+	public void testSetShowAsAction() throws Throwable {
+		benchmark("setShowAsAction", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				((SimpleMenuItem) mMenu.getItem(i % mSize)).setShowAsAction(i & 1);
+			}
+		});
+	}
+
+	public void testMenuItemCompatSetShowAsAction() throws Throwable {
+		benchmark("MenuItemCompat.setShowAsAction", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				MenuItemCompat.setShowAsAction(mMenu.getItem(i % mSize), i & 1);
+			}
+		});
+	}
+
+	public void testMenuItemCompatGetActionView() throws Throwable {
+		benchmark("MenuItemCompat.getActionView", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				final MenuItem item = mMenu.getItem(i % mSize);
+				MenuItemCompat.getActionView(item);
+			}
+		});
+	}
+
+	public void testSetTitle() throws Throwable {
+		benchmark("Activity.setTitle", ONCE, new ActivityOperation() {
+			@Override
+			public void run(int i) {
+				mActivity.setTitle(TITLES[i & 1]);
+			}
+		});
+	}
+
+	public void testActionBarCompatSetTitle() throws Throwable {
+		benchmark("ActionBarCompat.setTitle", ONCE, new ActivityOperation() {
+			@Override
+			public void run(int i) {
+				ActionBarCompat.setTitle(mActivity, TITLES[i & 1]);
+			}
+		});
+	}
+
+	public void testActionBarCompatSetDisplayShowHomeEnabled() throws Throwable {
+		benchmark("ActionBarCompat.setDisplayShowHomeEnabled", ONCE, new ActivityOperation() {
+			@Override
+			public void run(int i) {
+				ActionBarCompat.setDisplayShowHomeEnabled(mActivity, (i & 1) == 0);
+			}
+		});
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+/**
+ * Base of the on-device benchmarks. Each benchmark runs on the main thread,
+ * where the library is used, for every menu size in {@link #SIZES}, and
+ * reports the best time per operation of several runs, the operations per
+ * second and the bytes allocated per operation to the log under the tag
+ * {@value #TAG}:
+ * <pre>
+ * adb shell am instrument -w -e class sk.m217.actionbarcompat.SimpleMenuLookupBenchmark \
+ *         sk.m217.actionbarcompat.tests/android.test.InstrumentationTestRunner
+ * adb logcat -s ActionBarCompatBenchmark
+ * </pre>
+ * Benchmarks do not assert on times, compare the results of the same
+ * benchmark before and after a change on the same device.
+ */
+public abstract class MenuBenchmarkCase extends InstrumentationTestCase {
+	static final String TAG = "ActionBarCompatBenchmark";
+
+	/** Menu sizes every benchmark runs with. */
+	static final int[] SIZES = { 5, 50, 500 };
+
+	private static final int WARMUP_RUNS = 3;
+	private static final int RUNS = 5;
+	private static final long MIN_RUN_NANOS = 50 * 1000 * 1000;
+
+	/**
+	 * A benchmarked operation.
+	 */
+	interface Operation {
+		/**
+		 * Prepares a run, not timed, e.g. fills a menu with <code>size</code> items.
+		 */
+		void setUp(int size);
+
+		/**
+		 * Performs the operation once.
+		 * @param i Number of the call within the run, e.g. to pick an item
+		 */
+		void run(int i);
+	}
+
+	/**
+	 * Creates an empty menu without an activity, see {@link TestMenuResources}.
+	 */
+	SimpleMenu newMenu() {
+		return new SimpleMenu(null, new TestMenuResources(getInstrumentation().getContext()));
+	}
+
+	/**
+	 * Fills a menu with items of ids 1 to <code>size</code>, in order.
+	 */
+	static void addItems(SimpleMenu menu, int size) {
+		menu.beginBulkAdd();
+		for (int id = 1; id <= size; id++) {
+			menu.add(0, id, id, TestMenuResources.TITLE);
+		}
+		menu.endBulkAdd();
+	}
+
+	/**
+	 * Runs the operation for every size in {@link #SIZES} and logs the
+	 * nanoseconds and bytes allocated per operation.
+	 * @param name Name of the operation in the log
+	 */
+	void benchmark(String name, Operation operation) throws Throwable {
+		benchmark(name, SIZES, operation);
+	}
+
+	/**
+	 * Runs the operation for every given size and logs the nanoseconds and
+	 * bytes allocated per operation, e.g. for an operation on a menu resource
+	 * of a fixed size.
+	 * @param name Name of the operation in the log
+	 */
+	void benchmark(final String name, int[] sizes, final Operation operation) throws Throwable {
+		for (int s = 0; s < sizes.length; s++) {
+			final int size = sizes[s];
+			final Result[] result = new Result[1];
+			runTestOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					result[0] = measure(operation, size);
+				}
+			});
+			final Result r = result[0];
+			Log.i(TAG, getClass().getSimpleName() + "." + name + " size=" + size + ": "
+					+ r.mBestRunNanos / r.mCalls + " ns/op, "
+					+ r.mCalls * 1000000000L / Math.max(1, r.mBestRunNanos) + " ops/s, "
+					+ r.mAllocatedBytes / r.mCalls + " bytes/op");
+		}
+	}
+
+	/**
+	 * Measurements of an operation for one size.
+	 */
+	private static class Result {
+		/** Number of calls in a run. */
+		int mCalls;
+		/** Time of the fastest run. */
+		long mBestRunNanos;
+		/** Bytes allocated on the main thread by a run. */
+		long mAllocatedBytes;
+	}
+
+	/**
+	 * Times {@link #RUNS} runs, each of enough calls to take at least 50 ms,
+	 * and counts the bytes allocated by one more run. Allocations are counted
+	 * in a run of their own, as counting them slows the timed runs down.
+	 */
+	private static Result measure(Operation operation, int size) {
+		final Result result = new Result();
+		// Find a number of calls that takes long enough.
+		int calls = 1;
+		while (true) {
+			operation.setUp(size);
+			final long start = System.nanoTime();
+			for (int i = 0; i < calls; i++) {
+				operation.run(i);
+			}
+			if (System.nanoTime() - start >= MIN_RUN_NANOS
+					|| calls >= 1 << 24) {
+				break;
+			}
+			calls <<= 1;
+		}
+		result.mCalls = calls;
+
+		result.mBestRunNanos = Long.MAX_VALUE;
+		for (int r = 0; r < WARMUP_RUNS + RUNS; r++) {
+			operation.setUp(size);
+			final long start = System.nanoTime();
+			for (int i = 0; i < calls; i++) {
+				operation.run(i);
+			}
+			final long runNanos = System.nanoTime() - start;
+			if (r >= WARMUP_RUNS) {
+				result.mBestRunNanos = Math.min(result.mBestRunNanos, runNanos);
+			}
+		}
+
+		operation.setUp(size);
+		Debug.startAllocCounting();
+		try {
+			Debug.resetThreadAllocSize();
+			for (int i = 0; i < calls; i++) {
+				operation.run(i);
+			}
+			result.mAllocatedBytes = Debug.getThreadAllocSize();
+		} finally {
+			Debug.stopAllocCounting();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.content.Context;
+
+/**
+ * A presenter that ignores all changes, for tests and benchmarks of their delivery.
+ */
+class NoopMenuPresenter implements SimpleMenuPresenter {
+	@Override
+	public void initForMenu(Context context, SimpleMenu menu) {
+	}
+
+	@Override
+	public void updateMenuView(SimpleMenu menu, SimpleMenuItem item, int change) {
+	}
+
+	@Override
+	public boolean expandItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+		return false;
+	}
+
+	@Override
+	public boolean collapseItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+		return false;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.graphics.drawable.Drawable;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.MenuItem;
+
+/**
+ * Tests that the item setters, {@link SimpleMenuItem#invoke()} and the delivery
+ * of item changes to the presenters allocate nothing on the main thread.
+ */
+public class SimpleMenuAllocationTest extends InstrumentationTestCase {
+	private static final int SIZE = 20;
+	private static final CharSequence[] TITLES = { "Title", "Other title" };
+
+	private SimpleMenu mMenu;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mMenu = new SimpleMenu(null, new TestMenuResources(getInstrumentation().getContext()));
+		MenuBenchmarkCase.addItems(mMenu, SIZE);
+		mMenu.addMenuPresenter(new NoopMenuPresenter());
+		mMenu.addMenuPresenter(new NoopMenuPresenter(), SimpleMenu.ITEM_CHANGED_TITLE);
+	}
+
+	private SimpleMenuItem item(int i) {
+		return (SimpleMenuItem) mMenu.getItem(i % SIZE);
+	}
+
+	@UiThreadTest
+	public void testSetTitleAllocatesNothing() {
+		assertEquals(0, Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				item(i).setTitle(TITLES[i & 1]);
+			}
+		}));
+	}
+
+	@UiThreadTest
+	public void testSetIconAllocatesNothing() {
+		assertEquals(0, Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				if ((i & 1) == 0) {
+					item(i).setIcon(android.R.drawable.ic_menu_search);
+				} else {
+					item(i).setIcon((Drawable) null);
+				}
+			}
+		}));
+	}
+
+	@UiThreadTest
+	public void testSetVisibleAllocatesNothing() {
+		assertEquals(0, Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				item(i).setVisible((i & 1) == 0);
+			}
+		}));
+	}
+
+	/**
+	 * Changes made in an update transaction are collected and delivered at
+	 * its end.
+	 */
+	@UiThreadTest
+	public void testChangesInUpdateAllocateNothing() {
+		assertEquals(0, Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				mMenu.beginUpdate();
+				for (int j = 0; j < SIZE; j++) {
+					item(j).setTitle(TITLES[i & 1]).setVisible((i & 1) == 0);
+				}
+				mMenu.endUpdate();
+			}
+		}));
+	}
+
+	@UiThreadTest
+	public void testInvokeAllocatesNothing() {
+		item(0).setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				return true;
+			}
+		});
+		assertEquals(0, Allocations.count(new Allocations.Call() {
+			@Override
+			public void run(int i) {
+				// The first item is handled by its listener, the others by no one.
+				item(i).invoke();
+			}
+		}));
+	}
+}
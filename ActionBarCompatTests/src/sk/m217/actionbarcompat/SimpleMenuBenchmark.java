@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+/**
+ * Benchmarks of adding, removing and clearing {@link SimpleMenu} items, see
+ * {@link MenuBenchmarkCase}. Lookups are in {@link SimpleMenuLookupBenchmark}.
+ */
+public class SimpleMenuBenchmark extends MenuBenchmarkCase {
+
+	private SimpleMenu mMenu;
+	private int mSize;
+
+	private abstract class MenuOperation implements Operation {
+		@Override
+		public void setUp(int size) {
+			mMenu = newMenu();
+			mSize = size;
+			addItems(mMenu, size);
+		}
+	}
+
+	/**
+	 * Adds items in order, clearing the menu once it holds <code>size</code> items.
+	 */
+	public void testAdd() throws Throwable {
+		benchmark("add", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				final int id = i % mSize + 1;
+				if (id == 1) {
+					mMenu.clear();
+				}
+				mMenu.add(0, id, id, TestMenuResources.TITLE);
+			}
+		});
+	}
+
+	/**
+	 * Adds an item with a low order into a full menu and removes it again.
+	 */
+	public void testAddFirst() throws Throwable {
+		benchmark("addFirst", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				mMenu.add(0, mSize + 1, 0, TestMenuResources.TITLE);
+				mMenu.removeItem(mSize + 1);
+			}
+		});
+	}
+
+	public void testRemoveItem() throws Throwable {
+		benchmark("removeItem", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				final int id = i % mSize + 1;
+				mMenu.removeItem(id);
+				mMenu.add(0, id, id, TestMenuResources.TITLE);
+			}
+		});
+	}
+
+	/**
+	 * Fills the menu with <code>size</code> items and clears it.
+	 */
+	public void testFillAndClear() throws Throwable {
+		benchmark("fillAndClear", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				mMenu.clear();
+				addItems(mMenu, mSize);
+			}
+		});
+	}
+}
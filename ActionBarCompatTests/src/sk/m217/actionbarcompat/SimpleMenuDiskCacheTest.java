@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import sk.m217.actionbarcompat.tests.R;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.test.InstrumentationTestCase;
+
+/**
+ * Tests that a corrupt {@link SimpleMenuDiskCache} entry counts as a miss:
+ * it is deleted and the menu is parsed again instead of failing inflation.
+ */
+public class SimpleMenuDiskCacheTest extends InstrumentationTestCase {
+	private static final long WRITE_TIMEOUT_MILLIS = 5000;
+
+	/** Offset of the length of the configuration string in an entry. */
+	private static final int CONFIGURATION_OFFSET = 4 + 4 + 4 + 8;
+
+	private Context mContext;
+	private Configuration mConfiguration;
+	private File mFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mContext = getInstrumentation().getContext();
+		mConfiguration = mContext.getResources().getConfiguration();
+		mFile = SimpleMenuDiskCache.getFile(mContext, R.menu.attributes, mConfiguration);
+		mFile.delete();
+		SimpleMenuDiskCache.writeAsync(mContext, R.menu.attributes, mConfiguration,
+				SimpleMenuInflater.parse(mContext.getResources(), R.menu.attributes));
+		final long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+		while (!mFile.exists()) {
+			assertTrue("Menu not cached", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+		super.tearDown();
+	}
+
+	public void testValidEntryIsRead() {
+		assertEquals(2, SimpleMenuDiskCache.read(mContext, R.menu.attributes, mConfiguration).size());
+	}
+
+	public void testTruncatedEntryIsParsedAgain() throws IOException {
+		final byte[] bytes = readFile();
+		final FileOutputStream out = new FileOutputStream(mFile);
+		try {
+			out.write(bytes, 0, bytes.length - 5);
+		} finally {
+			out.close();
+		}
+		assertMiss();
+	}
+
+	public void testNegativeLengthIsParsedAgain() throws IOException {
+		writeInt(CONFIGURATION_OFFSET, -1);
+		assertMiss();
+	}
+
+	public void testLengthPastEndIsParsedAgain() throws IOException {
+		writeInt(CONFIGURATION_OFFSET, Integer.MAX_VALUE);
+		assertMiss();
+	}
+
+	public void testInvalidOrderIsParsedAgain() throws IOException {
+		final int length = mConfiguration.toString().getBytes("UTF-8").length;
+		// Skips the configuration, the item count and the id of the first item.
+		writeInt(CONFIGURATION_OFFSET + 4 + length + 4 + 4, 0xffff0000);
+		assertMiss();
+	}
+
+	private void assertMiss() {
+		assertNull(SimpleMenuDiskCache.read(mContext, R.menu.attributes, mConfiguration));
+		assertFalse(mFile.exists());
+		final SimpleMenuModel model = SimpleMenuInflater.loadModel(mContext,
+				mContext.getResources(), mConfiguration, R.menu.attributes);
+		assertEquals(2, model.size());
+	}
+
+	private byte[] readFile() throws IOException {
+		final byte[] bytes = new byte[(int) mFile.length()];
+		final FileInputStream in = new FileInputStream(mFile);
+		try {
+			int read = 0;
+			while (read < bytes.length) {
+				read += in.read(bytes, read, bytes.length - read);
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+	private void writeInt(int offset, int value) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+		try {
+			file.seek(offset);
+			file.writeInt(value);
+		} finally {
+			file.close();
+		}
+	}
+}
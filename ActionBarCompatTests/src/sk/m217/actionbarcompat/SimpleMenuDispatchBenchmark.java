@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+/**
+ * Benchmarks of item setters and the delivery of their changes to 0, 1 and
+ * {@value #PRESENTERS} presenters, see {@link MenuBenchmarkCase}.
+ */
+public class SimpleMenuDispatchBenchmark extends MenuBenchmarkCase {
+
+	private static final int PRESENTERS = 4;
+	private static final CharSequence[] TITLES = { "Title", "Other title" };
+
+	private SimpleMenu mMenu;
+	private int mSize;
+
+	private class MenuOperation implements Operation {
+		private final int mPresenters;
+
+		MenuOperation(int presenters) {
+			mPresenters = presenters;
+		}
+
+		@Override
+		public void setUp(int size) {
+			mMenu = newMenu();
+			mSize = size;
+			addItems(mMenu, size);
+			for (int i = 0; i < mPresenters; i++) {
+				mMenu.addMenuPresenter(new NoopMenuPresenter());
+			}
+		}
+
+		@Override
+		public void run(int i) {
+			((SimpleMenuItem) mMenu.getItem(i % mSize)).setTitle(TITLES[i & 1]);
+		}
+	}
+
+	public void testSetTitleWithoutPresenters() throws Throwable {
+		benchmark("setTitle0", new MenuOperation(0));
+	}
+
+	public void testSetTitleWithPresenter() throws Throwable {
+		benchmark("setTitle1", new MenuOperation(1));
+	}
+
+	public void testSetTitleWithPresenters() throws Throwable {
+		benchmark("setTitle" + PRESENTERS, new MenuOperation(PRESENTERS));
+	}
+
+	/**
+	 * Sets several properties of an item, each change delivered on its own.
+	 */
+	public void testSetterChain() throws Throwable {
+		benchmark("setterChain", new MenuOperation(1) {
+			@Override
+			public void run(int i) {
+				mMenu.getItem(i % mSize)
+						.setTitle(TITLES[i & 1])
+						.setIcon(null)
+						.setEnabled((i & 1) == 0)
+						.setVisible(true);
+			}
+		});
+	}
+
+	/**
+	 * Sets the same properties as {@link #testSetterChain()} in one update
+	 * transaction, delivered to the presenter once.
+	 */
+	public void testSetterChainInUpdate() throws Throwable {
+		benchmark("setterChainInUpdate", new MenuOperation(1) {
+			@Override
+			public void run(int i) {
+				mMenu.beginUpdate();
+				mMenu.getItem(i % mSize)
+						.setTitle(TITLES[i & 1])
+						.setIcon(null)
+						.setEnabled((i & 1) == 0)
+						.setVisible(true);
+				mMenu.endUpdate();
+			}
+		});
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.util.Log;
+import android.view.MenuItem;
+
+/**
+ * Measures the heap retained by {@link SimpleMenu} items. Items only
+ * allocate their {@link SimpleMenuItem} extras when a rarely used property
+ * is set, so the benchmark compares plain items with items whose extras are
+ * forced, which approximates the former layout carrying those fields on
+ * every item. Results are logged like the other benchmarks, see
+ * {@link MenuBenchmarkCase}.
+ */
+public class SimpleMenuHeapBenchmark extends MenuBenchmarkCase {
+
+	/** Menu sizes of the heap measurements. */
+	private static final int[] HEAP_SIZES = { 10, 100, 1000 };
+
+	/** Items measured per size, spread over as many menus as needed. */
+	private static final int TOTAL_ITEMS = 20000;
+
+	public void testRetainedHeap() throws Throwable {
+		for (int s = 0; s < HEAP_SIZES.length; s++) {
+			final int size = HEAP_SIZES[s];
+			final long without = retainedPerMenu(size, false);
+			final long with = retainedPerMenu(size, true);
+			Log.i(TAG, getClass().getSimpleName() + ".retainedHeap size=" + size
+					+ ": " + without + " bytes/menu lazy extras, "
+					+ with + " bytes/menu forced extras, "
+					+ (with - without) / size + " bytes/item saved");
+		}
+	}
+
+	/**
+	 * @return The heap retained by one menu of <code>size</code> items,
+	 *         averaged over {@link #TOTAL_ITEMS} items.
+	 */
+	private long retainedPerMenu(final int size, final boolean forceExtras) throws Throwable {
+		final SimpleMenu[] menus = new SimpleMenu[Math.max(1, TOTAL_ITEMS / size)];
+		final long before = usedHeap();
+		runTestOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				for (int m = 0; m < menus.length; m++) {
+					final SimpleMenu menu = newMenu();
+					addItems(menu, size);
+					if (forceExtras) {
+						for (int i = 0; i < size; i++) {
+							// Allocates the extras and leaves the item as it was.
+							final MenuItem item = menu.getItem(i);
+							item.setTitleCondensed(TestMenuResources.TITLE);
+							item.setTitleCondensed(null);
+						}
+					}
+					menus[m] = menu;
+				}
+			}
+		});
+		final long retained = usedHeap() - before;
+		// Keeps the menus reachable until the heap is measured.
+		assertNotNull(menus[menus.length - 1]);
+		return retained / menus.length;
+	}
+
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import sk.m217.actionbarcompat.tests.R;
+import android.content.res.Resources;
+import android.view.MenuInflater;
+
+/**
+ * Benchmarks of inflating a menu resource into a {@link SimpleMenu}, with the
+ * framework {@link MenuInflater} and with {@link SimpleMenuInflater}, both
+ * reading the XML and from its parsed menu. See {@link MenuBenchmarkCase}.
+ */
+public class SimpleMenuInflaterBenchmark extends MenuBenchmarkCase {
+
+	/** Number of items in R.menu.benchmark. */
+	private static final int[] MENU_SIZE = { 8 };
+
+	private SimpleMenu mMenu;
+	private Resources mResources;
+
+	private abstract class InflateOperation implements Operation {
+		@Override
+		public void setUp(int size) {
+			mMenu = newMenu();
+			mResources = getInstrumentation().getContext().getResources();
+		}
+	}
+
+	public void testFrameworkInflater() throws Throwable {
+		benchmark("frameworkInflater", MENU_SIZE, new InflateOperation() {
+			private MenuInflater mInflater;
+
+			@Override
+			public void setUp(int size) {
+				super.setUp(size);
+				mInflater = new MenuInflater(getInstrumentation().getContext());
+			}
+
+			@Override
+			public void run(int i) {
+				mMenu.clear();
+				mInflater.inflate(R.menu.benchmark, mMenu);
+			}
+		});
+	}
+
+	public void testSimpleInflaterParse() throws Throwable {
+		benchmark("simpleInflaterParse", MENU_SIZE, new InflateOperation() {
+			@Override
+			public void run(int i) {
+				mMenu.clear();
+				mMenu.addModelItems(SimpleMenuInflater.parse(mResources, R.menu.benchmark));
+			}
+		});
+	}
+
+	public void testSimpleInflater() throws Throwable {
+		benchmark("simpleInflater", MENU_SIZE, new InflateOperation() {
+			private SimpleMenuInflater mInflater;
+
+			@Override
+			public void setUp(int size) {
+				super.setUp(size);
+				mInflater = new SimpleMenuInflater(getInstrumentation().getContext());
+			}
+
+			@Override
+			public void run(int i) {
+				mMenu.clear();
+				mInflater.inflate(R.menu.benchmark, mMenu);
+			}
+		});
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import sk.m217.actionbarcompat.tests.R;
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.MenuItem;
+
+/**
+ * Tests that {@link SimpleMenuInflater} reads the attributes the framework
+ * menu inflater reads, including references to other resources.
+ */
+public class SimpleMenuInflaterTest extends InstrumentationTestCase {
+
+	private Context mContext;
+	private SimpleMenu mMenu;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mContext = getInstrumentation().getContext();
+		mMenu = new SimpleMenu(null, new SimpleMenuResources.ContextResources(mContext));
+	}
+
+	private void inflate() {
+		new SimpleMenuInflater(mContext).inflate(R.menu.attributes, mMenu);
+	}
+
+	@UiThreadTest
+	public void testReferencesAreResolved() {
+		inflate();
+		final MenuItem item = mMenu.findItem(R.id.menu_referenced);
+		assertEquals(mContext.getString(R.string.menu_title), item.getTitle());
+		assertEquals(mContext.getString(R.string.menu_title_condensed),
+				item.getTitleCondensed());
+		assertFalse(item.isVisible());
+		// @integer/menu_order puts it after the literal item.
+		assertSame(item, mMenu.getItem(1));
+	}
+
+	@UiThreadTest
+	public void testLiteralsAreRead() {
+		inflate();
+		final MenuItem item = mMenu.findItem(R.id.menu_literal);
+		assertEquals("Literal", item.getTitle().toString());
+		assertEquals("Lit", item.getTitleCondensed().toString());
+		assertFalse(item.isEnabled());
+		assertTrue(item.isVisible());
+	}
+}
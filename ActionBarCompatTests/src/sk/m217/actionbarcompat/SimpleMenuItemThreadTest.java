@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.content.Intent;
+import android.test.InstrumentationTestCase;
+import android.view.MenuItem;
+import android.view.View;
+
+/**
+ * Tests the item setters that may be called from any thread.
+ */
+public class SimpleMenuItemThreadTest extends InstrumentationTestCase {
+
+	private static final int CHANGES = 10000;
+
+	private SimpleMenuItem mItem;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				final SimpleMenu menu = new SimpleMenu(null,
+						new TestMenuResources(getInstrumentation().getContext()));
+				mItem = (SimpleMenuItem) menu.add(0, 1, 0, "Title");
+			}
+		});
+	}
+
+	public void testConcurrentFlagChangesAreNotLost() throws InterruptedException {
+		final Thread enabler = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < CHANGES; i++) {
+					mItem.setEnabled(i % 2 == 0);
+				}
+			}
+		};
+		final Thread hider = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < CHANGES; i++) {
+					mItem.setVisible(i % 2 == 0);
+				}
+			}
+		};
+		enabler.start();
+		hider.start();
+		enabler.join();
+		hider.join();
+
+		// Both threads end on an odd iteration.
+		assertFalse(mItem.isEnabled());
+		assertFalse(mItem.isVisible());
+	}
+
+	public void testConcurrentExtrasAreNotLost() throws InterruptedException {
+		final Intent intent = new Intent(Intent.ACTION_VIEW);
+		final MenuItem.OnMenuItemClickListener listener = new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				return true;
+			}
+		};
+		final Thread first = new Thread() {
+			@Override
+			public void run() {
+				mItem.setIntent(intent);
+			}
+		};
+		final Thread second = new Thread() {
+			@Override
+			public void run() {
+				mItem.setOnMenuItemClickListener(listener);
+			}
+		};
+		first.start();
+		second.start();
+		first.join();
+		second.join();
+
+		assertSame(intent, mItem.getIntent());
+		assertTrue(mItem.invoke());
+	}
+
+	public void testSetActionViewOffMainThreadFails() {
+		try {
+			mItem.setActionView(new View(getInstrumentation().getContext()));
+			fail("setActionView succeeded off the main thread");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+		assertNull(mItem.getActionView());
+	}
+}
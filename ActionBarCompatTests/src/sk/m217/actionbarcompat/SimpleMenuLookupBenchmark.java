@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+/**
+ * Benchmarks of looking up and removing {@link SimpleMenu} items by id. The
+ * time per operation should not grow with the menu size, see {@link MenuBenchmarkCase}.
+ */
+public class SimpleMenuLookupBenchmark extends MenuBenchmarkCase {
+
+	private SimpleMenu mMenu;
+	private int mSize;
+
+	private abstract class MenuOperation implements Operation {
+		@Override
+		public void setUp(int size) {
+			mMenu = newMenu();
+			mSize = size;
+			addItems(mMenu, size);
+		}
+	}
+
+	public void testFindItem() throws Throwable {
+		benchmark("findItem", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				mMenu.findItem(i % mSize + 1);
+			}
+		});
+	}
+
+	public void testFindItemMissing() throws Throwable {
+		benchmark("findItemMissing", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				mMenu.findItem(-1 - i);
+			}
+		});
+	}
+
+	public void testFindItemIndex() throws Throwable {
+		benchmark("findItemIndex", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				mMenu.findItemIndex(i % mSize + 1);
+			}
+		});
+	}
+
+	/**
+	 * Removes an item, finds another one and adds the removed one back, the
+	 * pattern that made the former position index rebuild on every lookup.
+	 */
+	public void testRemoveFindAdd() throws Throwable {
+		benchmark("removeFindAdd", new MenuOperation() {
+			@Override
+			public void run(int i) {
+				final int id = i % mSize + 1;
+				mMenu.removeItem(id);
+				mMenu.findItem(mSize + 1 - id);
+				mMenu.add(0, id, id, TestMenuResources.TITLE);
+			}
+		});
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import sk.m217.actionbarcompat.tests.R;
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.text.Spanned;
+
+/**
+ * Tests of publishing a {@link SimpleMenuModel} to a {@link SimpleMenu}.
+ */
+public class SimpleMenuPublishModelTest extends InstrumentationTestCase {
+
+	private SimpleMenu mMenu;
+	private RecordingPresenter mPresenter;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mMenu = new SimpleMenu(null, new TestMenuResources(getInstrumentation().getContext()));
+		mPresenter = new RecordingPresenter();
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mMenu.add(0, 1, 0, "Old");
+				mMenu.add(0, 2, 0, "Gone");
+				mMenu.addMenuPresenter(mPresenter, SimpleMenu.ITEM_CHANGED_NEW);
+			}
+		});
+	}
+
+	public void testPublishedModelReplacesItems() {
+		final SimpleMenuModel.Builder builder = new SimpleMenuModel.Builder();
+		builder.add(1, 0, "New").setShowAsAction(MenuItemCompat.SHOW_AS_ACTION_ALWAYS);
+		builder.add(3, 0, "Added").setVisible(false);
+		mMenu.publishModel(builder.build());
+		getInstrumentation().waitForIdleSync();
+
+		assertEquals(2, mMenu.size());
+		assertEquals("New", mMenu.findItem(1).getTitle());
+		assertTrue(((SimpleMenuItem) mMenu.findItem(1)).requestsActionButton());
+		assertNull(mMenu.findItem(2));
+		assertFalse(mMenu.findItem(3).isVisible());
+	}
+
+	public void testPresentersReconcileOnceAfterItemsAreReplaced() {
+		final SimpleMenuModel.Builder builder = new SimpleMenuModel.Builder();
+		builder.add(1, 0, "New");
+		builder.add(3, 0, "Added");
+		mMenu.publishModel(builder.build());
+		getInstrumentation().waitForIdleSync();
+
+		assertEquals(1, mPresenter.mReconciles);
+		// Delivered after the new items, which the presenter sees in the menu.
+		assertEquals(2, mPresenter.mItemsAtReconcile);
+		assertEquals(2, mPresenter.mNewItems);
+	}
+
+	public void testOnlyLatestPublishedModelIsApplied() {
+		for (int i = 1; i <= 3; i++) {
+			final SimpleMenuModel.Builder builder = new SimpleMenuModel.Builder();
+			for (int id = 1; id <= i; id++) {
+				builder.add(id, 0, "Item");
+			}
+			mMenu.publishModel(builder.build());
+		}
+		getInstrumentation().waitForIdleSync();
+
+		assertEquals(3, mMenu.size());
+		assertEquals(1, mPresenter.mReconciles);
+	}
+
+	public void testStyledTitleResourcesKeepTheirSpans() {
+		final Context context = getInstrumentation().getContext();
+		final SimpleMenu menu = new SimpleMenu(null, new SimpleMenuResources.ContextResources(context));
+		final SimpleMenuModel.Builder builder = new SimpleMenuModel.Builder();
+		builder.add(1, 0, R.string.menu_title_styled)
+				.setTitleCondensed(R.string.menu_title_styled);
+		menu.publishModel(builder.build());
+		getInstrumentation().waitForIdleSync();
+
+		assertTrue(menu.findItem(1).getTitle() instanceof Spanned);
+		assertTrue(menu.findItem(1).getTitleCondensed() instanceof Spanned);
+	}
+
+	private static class RecordingPresenter implements SimpleMenuPresenter {
+		int mReconciles;
+		int mItemsAtReconcile;
+		int mNewItems;
+
+		@Override
+		public void initForMenu(Context context, SimpleMenu menu) {
+		}
+		@Override
+		public void updateMenuView(SimpleMenu menu, SimpleMenuItem item, int change) {
+			if (item == null) {
+				mReconciles++;
+				mItemsAtReconcile = menu.size();
+			} else if ((change & SimpleMenu.ITEM_CHANGED_NEW) != 0) {
+				mNewItems++;
+			}
+		}
+		@Override
+		public boolean expandItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+			return false;
+		}
+		@Override
+		public boolean collapseItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.drawable.ColorDrawable;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.MenuItem;
+import android.view.View;
+
+/**
+ * Tests that items recycled by {@link SimpleMenu#clear()} start over as new
+ * items, and that items still in use are not recycled.
+ */
+public class SimpleMenuRecycleTest extends InstrumentationTestCase {
+
+	private SimpleMenu mMenu;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mMenu = new SimpleMenu(null, new TestMenuResources(getInstrumentation().getContext()));
+	}
+
+	private SimpleMenuItem add(int id, CharSequence title) {
+		return (SimpleMenuItem) mMenu.add(0, id, 0, title);
+	}
+
+	@UiThreadTest
+	public void testRecycledItemIsReset() {
+		final Context context = getInstrumentation().getContext();
+		final SimpleMenuItem item = add(1, "Old");
+		final boolean[] clicked = new boolean[1];
+		item.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				clicked[0] = true;
+				return true;
+			}
+		});
+		item.setOnActionExpandListener(new MenuItemICS.OnActionExpandListener() {
+			@Override
+			public boolean onMenuItemActionExpand(MenuItem item) {
+				return true;
+			}
+			@Override
+			public boolean onMenuItemActionCollapse(MenuItem item) {
+				return true;
+			}
+		});
+		item.setActionView(new View(context));
+		item.setIntent(new Intent(Intent.ACTION_VIEW));
+		item.setIcon(new ColorDrawable());
+		item.setTitleCondensed("Old condensed");
+		item.setShowAsAction(MenuItemCompat.SHOW_AS_ACTION_ALWAYS
+				| MenuItemCompat.SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW);
+		item.setVisible(false);
+		item.setEnabled(false);
+		item.setActionViewExpanded(true);
+
+		mMenu.clear();
+		final SimpleMenuItem reused = add(2, "New");
+
+		assertSame(item, reused);
+		assertEquals(2, reused.getItemId());
+		assertEquals("New", reused.getTitle());
+		assertEquals("New", reused.getTitleCondensed());
+		assertNull(reused.getIcon());
+		assertEquals(SimpleMenuItem.NO_ICON, reused.getIconResId());
+		assertNull(reused.getIntent());
+		assertNull(reused.getActionView());
+		assertNull(reused.getView());
+		assertEquals(MenuItemCompat.SHOW_AS_ACTION_NEVER, reused.getShowAsAction());
+		assertFalse(reused.hasCollapsibleActionView());
+		assertTrue(reused.isVisible());
+		assertTrue(reused.isEnabled());
+		assertFalse(reused.isActionViewExpanded());
+		assertEquals(0, reused.getPendingChanges());
+		assertFalse(reused.hasRemotePendingChanges());
+
+		// Neither the old click listener nor the old intent may fire.
+		assertFalse(reused.invoke());
+		assertFalse(clicked[0]);
+		// Nor the old expand listener, there is no action view to expand.
+		assertFalse(reused.expandActionView());
+	}
+
+	@UiThreadTest
+	public void testRecycledItemIsFoundUnderItsNewId() {
+		final SimpleMenuItem item = add(1, "Old");
+		mMenu.clear();
+		final SimpleMenuItem reused = add(2, "New");
+
+		assertSame(item, reused);
+		assertNull(mMenu.findItem(1));
+		assertSame(reused, mMenu.findItem(2));
+		assertEquals(1, mMenu.size());
+	}
+
+	@UiThreadTest
+	public void testItemShownInActionBarIsNotRecycled() {
+		final SimpleMenuItem item = add(1, "Button");
+		item.setView(new View(getInstrumentation().getContext()));
+		mMenu.clear();
+
+		assertNotSame(item, add(2, "New"));
+		assertEquals(1, item.getItemId());
+	}
+
+	@UiThreadTest
+	public void testExpandedItemIsNotRecycled() {
+		final SimpleMenuItem item = add(1, "Search");
+		mMenu.addMenuPresenter(new ExpandingPresenter());
+		item.setActionView(new View(getInstrumentation().getContext()));
+		item.setShowAsAction(MenuItemCompat.SHOW_AS_ACTION_IF_ROOM
+				| MenuItemCompat.SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW);
+		assertTrue(item.expandActionView());
+		mMenu.clear();
+
+		assertNotSame(item, add(2, "New"));
+		assertSame(item, mMenu.getExpandedItem());
+	}
+
+	@UiThreadTest
+	public void testItemWithPendingChangesIsNotRecycled() {
+		final SimpleMenuItem item = add(1, "Old");
+		mMenu.beginUpdate();
+		try {
+			item.setTitle("Changed");
+			mMenu.clear();
+			assertNotSame(item, add(2, "New"));
+		} finally {
+			mMenu.endUpdate();
+		}
+		assertEquals(1, item.getItemId());
+	}
+
+	@UiThreadTest
+	public void testItemChangedOnAnotherThreadIsNotRecycled() throws InterruptedException {
+		final SimpleMenuItem item = add(1, "Old");
+		final Thread worker = new Thread() {
+			@Override
+			public void run() {
+				item.setTitle("Changed");
+			}
+		};
+		worker.start();
+		worker.join();
+		// The change is delivered on this thread after the test returns.
+		assertTrue(item.hasRemotePendingChanges());
+		mMenu.clear();
+
+		assertNotSame(item, add(2, "New"));
+		assertEquals(1, item.getItemId());
+	}
+
+	@UiThreadTest
+	public void testItemsOfMenuChangedOnAnotherThreadAreNotRecycled()
+			throws InterruptedException {
+		final SimpleMenuItem changed = add(1, "Changed");
+		final SimpleMenuItem untouched = add(2, "Untouched");
+		final Thread worker = new Thread() {
+			@Override
+			public void run() {
+				changed.setEnabled(false);
+			}
+		};
+		worker.start();
+		worker.join();
+		mMenu.clear();
+
+		final SimpleMenuItem item = add(3, "New");
+		assertNotSame(changed, item);
+		assertNotSame(untouched, item);
+	}
+
+	@UiThreadTest
+	public void testRecycledItemsAreBounded() {
+		final SimpleMenuItem[] items = new SimpleMenuItem[100];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = add(i + 1, "Item");
+		}
+		mMenu.clear();
+
+		int reused = 0;
+		for (int i = 0; i < items.length; i++) {
+			final SimpleMenuItem item = add(i + 1, "Item");
+			for (int j = 0; j < items.length; j++) {
+				if (items[j] == item) {
+					reused++;
+					break;
+				}
+			}
+		}
+		assertTrue("Reused " + reused + " items", reused > 0 && reused <= 32);
+	}
+
+	private static class ExpandingPresenter implements SimpleMenuPresenter {
+		@Override
+		public void initForMenu(Context context, SimpleMenu menu) {
+		}
+		@Override
+		public void updateMenuView(SimpleMenu menu, SimpleMenuItem item, int change) {
+		}
+		@Override
+		public boolean expandItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+			return true;
+		}
+		@Override
+		public boolean collapseItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+
+/**
+ * Tests that changes collected in an update transaction reach the presenters
+ * in the order in which the items first changed.
+ */
+public class SimpleMenuUpdateOrderTest extends InstrumentationTestCase {
+
+	private SimpleMenu mMenu;
+	private RecordingPresenter mPresenter;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mMenu = new SimpleMenu(null, new TestMenuResources(getInstrumentation().getContext()));
+		mPresenter = new RecordingPresenter();
+		mMenu.addMenuPresenter(mPresenter);
+	}
+
+	@UiThreadTest
+	public void testNewItemsAreDeliveredInAddOrder() {
+		mMenu.beginUpdate();
+		for (int id = 1; id <= 5; id++) {
+			mMenu.add(0, id, id, TestMenuResources.TITLE);
+		}
+		assertTrue(mPresenter.mItemIds.isEmpty());
+		mMenu.endUpdate();
+
+		assertEquals("[1, 2, 3, 4, 5]", mPresenter.mItemIds.toString());
+	}
+
+	@UiThreadTest
+	public void testChangedItemsAreDeliveredInOrderOfFirstChange() {
+		for (int id = 1; id <= 3; id++) {
+			mMenu.add(0, id, id, TestMenuResources.TITLE);
+		}
+		mPresenter.mItemIds.clear();
+
+		mMenu.beginUpdate();
+		mMenu.findItem(3).setTitle("Three");
+		mMenu.findItem(1).setTitle("One");
+		mMenu.findItem(3).setVisible(false);
+		mMenu.findItem(2).setTitle("Two");
+		mMenu.endUpdate();
+
+		assertEquals("[3, 1, 2]", mPresenter.mItemIds.toString());
+	}
+
+	private static class RecordingPresenter implements SimpleMenuPresenter {
+		final ArrayList<Integer> mItemIds = new ArrayList<Integer>();
+
+		@Override
+		public void initForMenu(Context context, SimpleMenu menu) {
+		}
+		@Override
+		public void updateMenuView(SimpleMenu menu, SimpleMenuItem item, int change) {
+			mItemIds.add(item.getItemId());
+		}
+		@Override
+		public boolean expandItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+			return false;
+		}
+		@Override
+		public boolean collapseItemActionView(SimpleMenu menu, SimpleMenuItem item) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+/**
+ * {@link SimpleMenuResources} for menus created without an activity. Titles
+ * are placeholders and icons null, so that the tests and benchmarks measure
+ * the menu rather than resource loading.
+ */
+class TestMenuResources implements SimpleMenuResources {
+	static final CharSequence TITLE = "Title";
+
+	private final Context mContext;
+
+	/**
+	 * @param context Context to create action views with, may be null if
+	 *        the items do not get any
+	 */
+	TestMenuResources(Context context) {
+		mContext = context;
+	}
+
+	@Override
+	public CharSequence getText(int resId) {
+		return TITLE;
+	}
+
+	@Override
+	public Drawable getDrawable(int resId) {
+		return null;
+	}
+
+	@Override
+	public View inflateActionView(int layoutResId) {
+		return new View(mContext);
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2012 Tibor Bombiak <biegleux[at]gmail[dot]com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sk.m217.actionbarcompat.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Build-time menu compiler. Turns the menu resources of an Android project
+ * into a <code>CompiledMenus</code> class in the project's package, which
+ * registers code that builds each menu with
+ * <code>SimpleMenuInflater.registerCompiledMenu()</code>. Call
+ * <code>CompiledMenus.register()</code> once, e.g. from
+ * <code>Application.onCreate()</code>.
+ * <p>
+ * Only menus in <code>res/menu</code> without configuration-specific variants
+ * are compiled. Menus the compiler cannot express in code, like sub-menus or
+ * values referring to theme attributes, are left to the XML inflater.
+ * <p>
+ * Usage: <code>MenuCompiler &lt;project dir&gt; &lt;output source dir&gt;</code>
+ */
+public class MenuCompiler {
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+    private static final String CLASS_NAME = "CompiledMenus";
+
+    private static final String[] MENU_CATEGORIES = {
+        "container", "system", "secondary", "alternative"
+    };
+    private static final String[] SHOW_AS_ACTION_FLAGS = {
+        "never", "ifRoom", "always", "withText", "collapseActionView"
+    };
+    private static final String[] SHOW_AS_ACTION_CONSTANTS = {
+        "SHOW_AS_ACTION_NEVER", "SHOW_AS_ACTION_IF_ROOM", "SHOW_AS_ACTION_ALWAYS",
+        "SHOW_AS_ACTION_WITH_TEXT", "SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW"
+    };
+
+    /** Thrown for a menu that cannot be compiled. */
+    private static class UnsupportedMenuException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedMenuException(String message) {
+            super(message);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: MenuCompiler <project dir> <output source dir>");
+            System.exit(2);
+        }
+        final File projectDir = new File(args[0]);
+        final File outputDir = new File(args[1]);
+
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final DocumentBuilder builder = factory.newDocumentBuilder();
+
+        final String packageName = builder.parse(new File(projectDir, "AndroidManifest.xml"))
+                .getDocumentElement().getAttribute("package");
+        final File resDir = new File(projectDir, "res");
+
+        final StringBuilder out = new StringBuilder();
+        out.append("// Generated by ").append(MenuCompiler.class.getName())
+                .append(" from res/menu. Do not edit.\n\n");
+        out.append("package ").append(packageName).append(";\n\n");
+        out.append("import sk.m217.actionbarcompat.MenuItemCompat;\n");
+        out.append("import sk.m217.actionbarcompat.SimpleMenuInflater;\n");
+        out.append("import sk.m217.actionbarcompat.SimpleMenuModel;\n\n");
+        out.append("public final class ").append(CLASS_NAME).append(" {\n\n");
+        out.append("    private ").append(CLASS_NAME).append("() {\n    }\n\n");
+        out.append("    public static void register() {\n");
+
+        final Set<String> variants = findMenuVariants(resDir);
+        final File[] menuFiles = new File(resDir, "menu").listFiles();
+        if (menuFiles != null) {
+            Arrays.sort(menuFiles);
+            for (File file : menuFiles) {
+                final String name = file.getName();
+                if (!name.endsWith(".xml")) {
+                    continue;
+                }
+                final String menuName = name.substring(0, name.length() - 4);
+                if (variants.contains(menuName)) {
+                    System.err.println("Skipping menu/" + name + ": has configuration variants");
+                    continue;
+                }
+                try {
+                    compileMenu(menuName, builder.parse(file).getDocumentElement(), out);
+                } catch (UnsupportedMenuException e) {
+                    System.err.println("Skipping menu/" + name + ": " + e.getMessage());
+                }
+            }
+        }
+
+        out.append("    }\n}\n");
+
+        final File packageDir = new File(outputDir, packageName.replace('.', File.separatorChar));
+        if (!packageDir.isDirectory() && !packageDir.mkdirs()) {
+            throw new IOException("Cannot create " + packageDir);
+        }
+        final Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(packageDir, CLASS_NAME + ".java")), "UTF-8");
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return Names of the menus that have a file in a qualified menu directory.
+     */
+    private static Set<String> findMenuVariants(File resDir) {
+        final Set<String> variants = new HashSet<String>();
+        final File[] dirs = resDir.listFiles();
+        if (dirs == null) {
+            return variants;
+        }
+        for (File dir : dirs) {
+            if (!dir.isDirectory() || !dir.getName().startsWith("menu-")) {
+                continue;
+            }
+            for (String name : dir.list()) {
+                if (name.endsWith(".xml")) {
+                    variants.add(name.substring(0, name.length() - 4));
+                }
+            }
+        }
+        return variants;
+    }
+
+    private static void compileMenu(String menuName, Element menu, StringBuilder out)
+            throws UnsupportedMenuException {
+        final StringBuilder items = new StringBuilder();
+        for (Node node = menu.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            final Element element = (Element) node;
+            if (element.getTagName().equals("item")) {
+                compileItem(element, null, items);
+            } else if (element.getTagName().equals("group")) {
+                for (Node child = element.getFirstChild(); child != null;
+                        child = child.getNextSibling()) {
+                    if (child.getNodeType() == Node.ELEMENT_NODE
+                            && ((Element) child).getTagName().equals("item")) {
+                        compileItem((Element) child, element, items);
+                    }
+                }
+            }
+        }
+
+        out.append("        SimpleMenuInflater.registerCompiledMenu(")
+                .append("R.menu.").append(fieldName(menuName)).append(",\n");
+        out.append("                new SimpleMenuInflater.CompiledMenu() {\n");
+        out.append("            @Override\n");
+        out.append("            public SimpleMenuModel build() {\n");
+        out.append("                final SimpleMenuModel.Builder b = new SimpleMenuModel.Builder();\n");
+        out.append(items);
+        out.append("                return b.build();\n");
+        out.append("            }\n");
+        out.append("        });\n");
+    }
+
+    private static void compileItem(Element item, Element group, StringBuilder out)
+            throws UnsupportedMenuException {
+        if (hasChildElements(item)) {
+            throw new UnsupportedMenuException("sub-menus are not supported");
+        }
+
+        final String id = item.hasAttributeNS(ANDROID_NS, "id")
+                ? reference(attr(item, "id"), "id") : "0";
+        final int category = category(attr(item, group, "menuCategory"));
+        final int orderInCategory = integer(attr(item, group, "orderInCategory"));
+        final int order = category | (orderInCategory & 0x0000ffff);
+
+        out.append("                b.add(").append(id).append(", ").append(order).append(", ");
+        final String title = attr(item, "title");
+        if (title == null) {
+            out.append("(CharSequence) null");
+        } else if (title.startsWith("@")) {
+            out.append(reference(title, "string"));
+        } else {
+            out.append(stringLiteral(title));
+        }
+        out.append(")");
+
+        final String titleCondensed = attr(item, "titleCondensed");
+        if (titleCondensed != null) {
+            out.append("\n                        .setTitleCondensed(")
+                    .append(titleCondensed.startsWith("@")
+                            ? reference(titleCondensed, "string")
+                            : stringLiteral(titleCondensed))
+                    .append(")");
+        }
+        final String icon = attr(item, "icon");
+        if (icon != null) {
+            out.append("\n                        .setIcon(").append(reference(icon, "drawable"))
+                    .append(")");
+        }
+        final String visible = attr(item, group, "visible");
+        if (visible != null && !bool(visible)) {
+            out.append("\n                        .setVisible(false)");
+        }
+        final String enabled = attr(item, group, "enabled");
+        if (enabled != null && !bool(enabled)) {
+            out.append("\n                        .setEnabled(false)");
+        }
+        final String showAsAction = attr(item, "showAsAction");
+        if (showAsAction != null) {
+            out.append("\n                        .setShowAsAction(")
+                    .append(showAsAction(showAsAction)).append(")");
+            final String actionLayout = attr(item, "actionLayout");
+            // Only action buttons show an action view, as in SimpleMenuInflater.
+            if (actionLayout != null && (showAsAction.contains("always")
+                    || showAsAction.contains("ifRoom"))) {
+                out.append("\n                        .setActionView(")
+                        .append(reference(actionLayout, "layout")).append(")");
+            }
+        }
+        out.append(";\n");
+    }
+
+    private static boolean hasChildElements(Element element) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String attr(Element element, String name) {
+        return element.hasAttributeNS(ANDROID_NS, name)
+                ? element.getAttributeNS(ANDROID_NS, name) : null;
+    }
+
+    /**
+     * @return The item's attribute, or the group's if the item does not set it.
+     */
+    private static String attr(Element item, Element group, String name) {
+        final String value = attr(item, name);
+        return value != null || group == null ? value : attr(group, name);
+    }
+
+    private static int category(String value) throws UnsupportedMenuException {
+        if (value == null) {
+            return 0;
+        }
+        for (int i = 0; i < MENU_CATEGORIES.length; i++) {
+            if (MENU_CATEGORIES[i].equals(value)) {
+                return (i + 1) << 16;
+            }
+        }
+        throw new UnsupportedMenuException("menuCategory " + value);
+    }
+
+    private static int integer(String value) throws UnsupportedMenuException {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.decode(value);
+        } catch (NumberFormatException e) {
+            throw new UnsupportedMenuException("integer " + value);
+        }
+    }
+
+    private static boolean bool(String value) throws UnsupportedMenuException {
+        if (value.equals("true") || value.equals("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new UnsupportedMenuException("boolean " + value);
+    }
+
+    private static String showAsAction(String value) throws UnsupportedMenuException {
+        final StringBuilder constants = new StringBuilder();
+        for (String flag : value.split("\\|")) {
+            final int index = Arrays.asList(SHOW_AS_ACTION_FLAGS).indexOf(flag.trim());
+            if (index < 0) {
+                throw new UnsupportedMenuException("showAsAction " + value);
+            }
+            if (constants.length() > 0) {
+                constants.append(" | ");
+            }
+            constants.append("MenuItemCompat.").append(SHOW_AS_ACTION_CONSTANTS[index]);
+        }
+        return constants.toString();
+    }
+
+    /**
+     * @return The R field of a resource reference like <code>@string/title</code>
+     *         or <code>@android:drawable/ic_menu_search</code>.
+     */
+    private static String reference(String value, String type) throws UnsupportedMenuException {
+        String rClass = "R";
+        String ref;
+        if (value.startsWith("@+")) {
+            ref = value.substring(2);
+        } else if (value.startsWith("@")) {
+            ref = value.substring(1);
+        } else {
+            throw new UnsupportedMenuException("expected a @" + type + " reference: " + value);
+        }
+        if (ref.startsWith("android:")) {
+            rClass = "android.R";
+            ref = ref.substring("android:".length());
+        }
+        if (!ref.startsWith(type + "/")) {
+            throw new UnsupportedMenuException("expected a @" + type + " reference: " + value);
+        }
+        return rClass + "." + type + "." + fieldName(ref.substring(type.length() + 1));
+    }
+
+    private static String fieldName(String resourceName) {
+        return resourceName.replace('.', '_');
+    }
+
+    private static String stringLiteral(String value) {
+        final StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                literal.append("\\\"");
+                break;
+            case '\\':
+                literal.append("\\\\");
+                break;
+            case '\n':
+                literal.append("\\n");
+                break;
+            default:
+                if (c < 0x20 || c > 0x7e) {
+                    literal.append(String.format("\\u%04x", (int) c));
+                } else {
+                    literal.append(c);
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}